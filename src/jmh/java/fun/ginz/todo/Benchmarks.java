@@ -0,0 +1,74 @@
+package fun.ginz.todo;
+
+import fun.ginz.todo.entity.Todo;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.redis.RedisOptions;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Shared fixtures of the benchmarks: payloads of a given size, a Redis to run against and a way
+ * to wait for a service call from the benchmark thread.
+ */
+public final class Benchmarks {
+
+    private Benchmarks() {}
+
+    public static Todo todo(int id, int titleLength) {
+        StringBuilder title = new StringBuilder(titleLength);
+        for (int i = 0; i < titleLength; i++) {
+            title.append((char) ('a' + i % 26));
+        }
+        return new Todo(id, title.toString(), id % 2 == 0, id, "http://localhost:8082/todos/" + id);
+    }
+
+    /**
+     * Uses the Redis given by {@code -Dredis.host}/{@code -Dredis.port}, or starts an embedded
+     * one on {@code redis.port} (6399 by default) when no host is given. Stop it with {@link #stop}.
+     */
+    public static RedisServer startRedis() throws IOException {
+        if (System.getProperty("redis.host") != null) {
+            return null;
+        }
+        RedisServer server = new RedisServer(redisPort());
+        server.start();
+        return server;
+    }
+
+    public static void stop(RedisServer server) {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    public static RedisOptions redisOptions() {
+        return new RedisOptions()
+                .setHost(System.getProperty("redis.host", "127.0.0.1"))
+                .setPort(redisPort());
+    }
+
+    private static int redisPort() {
+        return Integer.getInteger("redis.port", 6399);
+    }
+
+    /**
+     * Runs {@code call} on {@code context} and blocks until its future completes. The services
+     * are not thread-safe, so every call of one fixture goes through the same context.
+     */
+    public static <T> T await(Context context, Supplier<Future<T>> call) throws Exception {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        context.runOnContext(v -> call.get().setHandler(ar -> {
+            if (ar.succeeded()) {
+                result.complete(ar.result());
+            } else {
+                result.completeExceptionally(ar.cause());
+            }
+        }));
+        return result.get(10, TimeUnit.SECONDS);
+    }
+}
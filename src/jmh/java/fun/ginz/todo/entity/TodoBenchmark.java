@@ -0,0 +1,101 @@
+package fun.ginz.todo.entity;
+
+import fun.ginz.todo.Benchmarks;
+import fun.ginz.todo.codec.BinaryTodoCodec;
+import fun.ginz.todo.codec.TodoCodec;
+import fun.ginz.todo.codec.TodoJson;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.Json;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class TodoBenchmark {
+
+    @Param({"16", "256", "4096"})
+    private int titleLength;
+
+    private Todo todo;
+    private Todo patch;
+    private String compact;
+    private String pretty;
+    private BinaryTodoCodec binaryCodec;
+    private Buffer binary;
+
+    @Setup
+    public void setup() {
+        todo = Benchmarks.todo(42, titleLength);
+        patch = new Todo();
+        patch.setCompleted(true);
+        compact = Json.encode(todo);
+        pretty = Json.encodePrettily(todo);
+        binaryCodec = new BinaryTodoCodec();
+        binary = binaryCodec.encode(todo);
+    }
+
+    @Benchmark
+    public Todo parseCompact() {
+        return new Todo(compact);
+    }
+
+    @Benchmark
+    public Todo parsePretty() {
+        return new Todo(pretty);
+    }
+
+    @Benchmark
+    public String encodeCompact() {
+        return Json.encode(todo);
+    }
+
+    @Benchmark
+    public String encodePretty() {
+        return Json.encodePrettily(todo);
+    }
+
+    @Benchmark
+    public Todo parseStreaming() {
+        return TodoJson.decode(compact);
+    }
+
+    @Benchmark
+    public Buffer encodeStreaming() {
+        return TodoJson.encode(todo, false);
+    }
+
+    @Benchmark
+    public Todo merge() {
+        return todo.merge(patch);
+    }
+
+    @Benchmark
+    public Buffer encodeBinary() {
+        return binaryCodec.encode(todo);
+    }
+
+    @Benchmark
+    public Todo decodeBinary() {
+        return TodoCodec.decode(binary);
+    }
+
+    @Benchmark
+    public String binaryToJson() {
+        return TodoCodec.toJson(binary);
+    }
+}
@@ -0,0 +1,127 @@
+package fun.ginz.todo.service;
+
+import com.zaxxer.hikari.HikariConfig;
+import fun.ginz.todo.Benchmarks;
+import fun.ginz.todo.entity.Todo;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The calls of {@link RedisTodoServiceBenchmark}, made against {@link JdbcTodoService} on an
+ * in-memory H2 database (or {@code -Djdbc.url}) holding {@code size} todos, so the two backends
+ * compare call by call. These are latencies too, including the hop to the JDBC thread and back.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JdbcTodoServiceBenchmark {
+
+    private static final int SIZE = 1000;
+    private static final int BATCH = 16;
+
+    @Param({"16", "256", "4096"})
+    private int titleLength;
+
+    private Vertx vertx;
+    private Context context;
+    private TodoService service;
+
+    private Todo patch;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        vertx = Vertx.vertx();
+        context = vertx.getOrCreateContext();
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(System.getProperty("jdbc.url", "jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1"));
+        config.setUsername(System.getProperty("jdbc.user", "sa"));
+        config.setPassword(System.getProperty("jdbc.password", ""));
+        service = new JdbcTodoService(JdbcTodoStore.shared(vertx, config, 4, 1024, false, null), false);
+
+        List<Todo> todos = new ArrayList<>(SIZE);
+        for (int id = 1; id <= SIZE; id++) {
+            todos.add(Benchmarks.todo(id, titleLength));
+        }
+        Benchmarks.await(context, service::deleteAll);
+        Benchmarks.await(context, () -> service.insertAll(todos));
+
+        patch = new Todo();
+        patch.setCompleted(true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Benchmarks.await(context, service::deleteAll);
+        Benchmarks.await(context, () -> {
+            Future<Void> closed = Future.future();
+            vertx.close(closed);
+            return closed;
+        });
+    }
+
+    private int nextId() {
+        next = next % SIZE + 1;
+        return next;
+    }
+
+    @Benchmark
+    public Optional<String> getCertainRaw() throws Exception {
+        String id = String.valueOf(nextId());
+        return Benchmarks.await(context, () -> service.getCertainRaw(id));
+    }
+
+    @Benchmark
+    public Optional<Todo> getCertain() throws Exception {
+        String id = String.valueOf(nextId());
+        return Benchmarks.await(context, () -> service.getCertain(id));
+    }
+
+    @Benchmark
+    public List<String> getManyRaw() throws Exception {
+        List<String> ids = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            ids.add(String.valueOf(nextId()));
+        }
+        return Benchmarks.await(context, () -> service.getManyRaw(ids));
+    }
+
+    @Benchmark
+    public Page<String> scanRaw() throws Exception {
+        return Benchmarks.await(context, () -> service.scanRaw(Page.FIRST, 100));
+    }
+
+    @Benchmark
+    public Todo insert() throws Exception {
+        Todo todo = Benchmarks.todo(nextId(), titleLength);
+        return Benchmarks.await(context, () -> service.insert(todo));
+    }
+
+    @Benchmark
+    public Todo update() throws Exception {
+        String id = String.valueOf(nextId());
+        return Benchmarks.await(context, () -> service.update(id, patch));
+    }
+}
@@ -0,0 +1,132 @@
+package fun.ginz.todo.service;
+
+import fun.ginz.todo.Benchmarks;
+import fun.ginz.todo.codec.TodoCodec;
+import fun.ginz.todo.entity.Todo;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import redis.embedded.RedisServer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round trips of {@link RedisTodoService} against a Redis holding {@code size} todos. Each call
+ * waits for the previous one, so these are latencies, not throughput under pipelining.
+ * The todo hash is wiped in setup, so only point {@code -Dredis.host} at a throwaway Redis.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RedisTodoServiceBenchmark {
+
+    private static final int SIZE = 1000;
+    private static final int BATCH = 16;
+
+    @Param({"16", "256", "4096"})
+    private int titleLength;
+
+    @Param({"json", "binary"})
+    private String format;
+
+    private RedisServer server;
+    private Vertx vertx;
+    private Context context;
+    private TodoService service;
+
+    private Todo patch;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        server = Benchmarks.startRedis();
+        vertx = Vertx.vertx();
+        context = vertx.getOrCreateContext();
+        service = Benchmarks.await(context, () ->
+                Future.succeededFuture(new RedisTodoService(vertx, Benchmarks.redisOptions(),
+                        TodoCodec.forName(format, false), null)));
+
+        List<Todo> todos = new ArrayList<>(SIZE);
+        for (int id = 1; id <= SIZE; id++) {
+            todos.add(Benchmarks.todo(id, titleLength));
+        }
+        Benchmarks.await(context, service::deleteAll);
+        Benchmarks.await(context, () -> service.insertAll(todos));
+
+        patch = new Todo();
+        patch.setCompleted(true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Benchmarks.await(context, service::deleteAll);
+        Benchmarks.await(context, () -> {
+            Future<Void> closed = Future.future();
+            vertx.close(closed);
+            return closed;
+        });
+        Benchmarks.stop(server);
+    }
+
+    private int nextId() {
+        next = next % SIZE + 1;
+        return next;
+    }
+
+    @Benchmark
+    public Optional<String> getCertainRaw() throws Exception {
+        String id = String.valueOf(nextId());
+        return Benchmarks.await(context, () -> service.getCertainRaw(id));
+    }
+
+    @Benchmark
+    public Optional<Todo> getCertain() throws Exception {
+        String id = String.valueOf(nextId());
+        return Benchmarks.await(context, () -> service.getCertain(id));
+    }
+
+    @Benchmark
+    public List<String> getManyRaw() throws Exception {
+        List<String> ids = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            ids.add(String.valueOf(nextId()));
+        }
+        return Benchmarks.await(context, () -> service.getManyRaw(ids));
+    }
+
+    @Benchmark
+    public Page<String> scanRaw() throws Exception {
+        return Benchmarks.await(context, () -> service.scanRaw(Page.FIRST, 100));
+    }
+
+    @Benchmark
+    public Todo insert() throws Exception {
+        Todo todo = Benchmarks.todo(nextId(), titleLength);
+        return Benchmarks.await(context, () -> service.insert(todo));
+    }
+
+    @Benchmark
+    public Todo update() throws Exception {
+        String id = String.valueOf(nextId());
+        return Benchmarks.await(context, () -> service.update(id, patch));
+    }
+}
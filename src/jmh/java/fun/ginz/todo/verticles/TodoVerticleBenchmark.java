@@ -0,0 +1,170 @@
+package fun.ginz.todo.verticles;
+
+import fun.ginz.todo.Benchmarks;
+import fun.ginz.todo.entity.Todo;
+import io.vertx.core.Context;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import redis.embedded.RedisServer;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Requests through the HTTP routes of a deployed {@link TodoVerticle}, one at a time over a
+ * keep-alive connection, with either backend behind it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TodoVerticleBenchmark {
+
+    private static final int PORT = 18082;
+    private static final int SIZE = 1000;
+
+    @Param({"memory", "redis"})
+    private String backend;
+
+    @Param({"16", "256", "4096"})
+    private int titleLength;
+
+    private RedisServer server;
+    private Vertx vertx;
+    private Context context;
+    private HttpClient client;
+
+    private int[] ids;
+    private int next;
+    private Buffer created;
+    private Buffer patch;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        JsonObject config = new JsonObject()
+                .put("http.port", PORT)
+                .put("http.host", "127.0.0.1")
+                .put("service.type", backend);
+        if ("redis".equals(backend)) {
+            server = Benchmarks.startRedis();
+            config.put("redis.host", Benchmarks.redisOptions().getHost())
+                    .put("redis.port", Benchmarks.redisOptions().getPort());
+        } else {
+            File dir = Files.createTempDirectory("todo-bench").toFile();
+            dir.deleteOnExit();
+            config.put("memory.dir", dir.getAbsolutePath());
+        }
+
+        vertx = Vertx.vertx();
+        context = vertx.getOrCreateContext();
+        Benchmarks.await(context, () -> {
+            Future<String> deployed = Future.future();
+            vertx.deployVerticle(TodoVerticle.class.getName(), new DeploymentOptions().setConfig(config), deployed);
+            return deployed;
+        });
+        client = vertx.createHttpClient(new HttpClientOptions()
+                .setDefaultHost("127.0.0.1")
+                .setDefaultPort(PORT)
+                .setKeepAlive(true)
+                .setMaxPoolSize(1));
+
+        request(HttpMethod.DELETE, "/todos", null);
+        JsonArray todos = new JsonArray();
+        for (int i = 0; i < SIZE; i++) {
+            todos.add(Benchmarks.todo(0, titleLength).toPatch());
+        }
+        JsonArray stored = request(HttpMethod.POST, "/todos/_bulk", todos.toBuffer()).toJsonArray();
+        ids = new int[stored.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = stored.getJsonObject(i).getInteger("id");
+        }
+
+        created = Json.encodeToBuffer(Benchmarks.todo(0, titleLength).toPatch());
+        Todo completed = new Todo();
+        completed.setCompleted(true);
+        patch = Json.encodeToBuffer(completed.toPatch());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        request(HttpMethod.DELETE, "/todos", null);
+        Benchmarks.await(context, () -> {
+            Future<Void> closed = Future.future();
+            vertx.close(closed);
+            return closed;
+        });
+        Benchmarks.stop(server);
+    }
+
+    // HttpClientRequest.handler is deprecated too, its replacement setHandler is 3.8 API
+    @SuppressWarnings("deprecation")
+    private Buffer request(HttpMethod method, String uri, Buffer body) throws Exception {
+        return Benchmarks.await(context, () -> {
+            Future<Buffer> response = Future.future();
+            HttpClientRequest request = client.request(method, uri).handler(res -> {
+                if (res.statusCode() >= 300) {
+                    response.fail(method + " " + uri + " returned " + res.statusCode());
+                    return;
+                }
+                res.bodyHandler(response::complete);
+            });
+            request.exceptionHandler(response::fail);
+            if (body == null) {
+                request.end();
+            } else {
+                request.putHeader("Content-Type", "application/json").end(body);
+            }
+            return response;
+        });
+    }
+
+    private int nextId() {
+        next = (next + 1) % ids.length;
+        return ids[next];
+    }
+
+    @Benchmark
+    public Buffer getOne() throws Exception {
+        return request(HttpMethod.GET, "/todos/" + nextId(), null);
+    }
+
+    @Benchmark
+    public Buffer getPage() throws Exception {
+        return request(HttpMethod.GET, "/todos?limit=100", null);
+    }
+
+    @Benchmark
+    public Buffer create() throws Exception {
+        return request(HttpMethod.POST, "/todos", created);
+    }
+
+    @Benchmark
+    public Buffer update() throws Exception {
+        return request(HttpMethod.PATCH, "/todos/" + nextId(), patch);
+    }
+}
@@ -0,0 +1,275 @@
+package fun.ginz.todo.loadtest;
+
+import fun.ginz.todo.Contants;
+import fun.ginz.todo.codec.TodoJson;
+import fun.ginz.todo.metrics.LatencyHistogram;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.HttpClientResponse;
+import io.vertx.core.http.HttpMethod;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Sends the requests of a {@link Mix} on a fixed schedule, request {@code n} being due {@code n / rate}
+ * seconds after the start whether or not the ones before it have been answered. A stalled server
+ * cannot slow the load down, and the latency of a request counts from the moment it was due, not
+ * from when it went out, so the time it waited for a connection behind slower requests is not
+ * left out (coordinated omission). The time from sending to the response is kept apart as the
+ * service time, which is what a closed-loop client would have reported.
+ * <p>
+ * Requests due during the warm-up are sent but not recorded. Runs on the context it is started
+ * from.
+ */
+class LoadGenerator {
+
+    static final String[] CLASSES = {"aborted", "1xx", "2xx", "3xx", "4xx", "5xx"};
+
+    private final Vertx vertx;
+    private final HttpClient client;
+    private final Mix mix;
+    private final double rate;
+    private final long timeout;
+    private final Random random;
+    private final int[] ids;
+    private final int hot;
+    private final Buffer created;
+    private final Buffer patch;
+
+    private final Stats total = new Stats();
+    private final Map<Mix.Operation, Stats> operations = new EnumMap<>(Mix.Operation.class);
+    /** Ids this run created and has not deleted yet, the only ones it deletes. */
+    private final ArrayDeque<Integer> owned = new ArrayDeque<>();
+
+    private long start;
+    private long measureFrom;
+    private long end;
+    private long sent;
+    private long inFlight;
+    private long lastResponse;
+    private boolean scheduling;
+    private Future<Void> done;
+
+    LoadGenerator(Vertx vertx, HttpClient client, Mix mix, double rate, long timeout, long seed,
+                  int[] ids, int hot, Buffer created, Buffer patch) {
+        this.vertx = vertx;
+        this.client = client;
+        this.mix = mix;
+        this.rate = rate;
+        this.timeout = timeout;
+        this.random = new Random(seed);
+        this.ids = ids;
+        this.hot = Math.max(1, Math.min(hot, ids.length));
+        this.created = created;
+        this.patch = patch;
+        for (Mix.Operation operation : Mix.Operation.values()) {
+            operations.put(operation, new Stats());
+        }
+    }
+
+    Future<Void> run(long warmupNanos, long durationNanos) {
+        done = Future.future();
+        start = System.nanoTime();
+        measureFrom = start + warmupNanos;
+        end = measureFrom + durationNanos;
+        scheduling = true;
+        double interval = 1e9 / rate;
+        // the timer only sets the pace, every tick sends all requests that have fallen due since the last one
+        vertx.setPeriodic(1, timer -> {
+            long now = System.nanoTime();
+            for (long due = start + (long) (sent * interval); due <= now && due < end;
+                 due = start + (long) (sent * interval)) {
+                sent++;
+                send(due);
+            }
+            if (now >= end) {
+                vertx.cancelTimer(timer);
+                scheduling = false;
+                completeIfIdle();
+            }
+        });
+        return done;
+    }
+
+    private void completeIfIdle() {
+        if (!scheduling && inFlight == 0) {
+            done.tryComplete();
+        }
+    }
+
+    private void send(long due) {
+        Mix.Operation operation = mix.pick(random);
+        if (operation == Mix.Operation.DELETE_ONE && owned.isEmpty()) {
+            operation = Mix.Operation.CREATE;
+        }
+
+        HttpMethod method;
+        String uri;
+        Buffer body = null;
+        switch (operation) {
+            case GET_ONE:
+                method = HttpMethod.GET;
+                uri = one(ids[random.nextInt(ids.length)]);
+                break;
+            case GET_HOT:
+                method = HttpMethod.GET;
+                uri = one(ids[random.nextInt(hot)]);
+                break;
+            case GET_PAGE:
+                method = HttpMethod.GET;
+                uri = Contants.API_GET_ALL + "?limit=50";
+                break;
+            case CREATE:
+                method = HttpMethod.POST;
+                uri = Contants.API_CREATE;
+                body = created;
+                break;
+            case UPDATE:
+                method = HttpMethod.PATCH;
+                uri = one(ids[random.nextInt(ids.length)]);
+                body = patch;
+                break;
+            case UPDATE_HOT:
+                method = HttpMethod.PATCH;
+                uri = one(ids[random.nextInt(hot)]);
+                body = patch;
+                break;
+            case DELETE_ONE:
+                method = HttpMethod.DELETE;
+                uri = one(owned.pollFirst());
+                break;
+            default:
+                throw new IllegalStateException(operation.toString());
+        }
+
+        inFlight++;
+        new Call(operation, due).send(method, uri, body);
+    }
+
+    private static String one(int id) {
+        return Contants.API_GET_ONE.replace(":todoId", String.valueOf(id));
+    }
+
+    Stats getTotal() {
+        return total;
+    }
+
+    Map<Mix.Operation, Stats> getOperations() {
+        return operations;
+    }
+
+    /** Nanoseconds from the end of the warm-up to the last response of a recorded request. */
+    long getMeasuredNanos() {
+        return Math.max(lastResponse, end) - measureFrom;
+    }
+
+    private class Call {
+
+        private final Mix.Operation operation;
+        private final long due;
+        private long sentAt;
+        private boolean finished;
+
+        Call(Mix.Operation operation, long due) {
+            this.operation = operation;
+            this.due = due;
+        }
+
+        // 3.7 deprecates every way to set the response handler, setHandler only comes with 3.8
+        @SuppressWarnings("deprecation")
+        void send(HttpMethod method, String uri, Buffer body) {
+            HttpClientRequest request = client.request(method, uri).handler(this::handle);
+            request.setTimeout(timeout);
+            request.exceptionHandler(e -> finish(0));
+            if (body != null) {
+                request.putHeader("Content-Type", "application/json")
+                        .putHeader("Content-Length", String.valueOf(body.length()));
+            }
+            // the head goes out once the request has a connection, which is where the service time starts
+            request.sendHead(version -> sentAt = System.nanoTime());
+            if (body == null) {
+                request.end();
+            } else {
+                request.end(body);
+            }
+        }
+
+        private void handle(HttpClientResponse response) {
+            int status = response.statusCode();
+            response.exceptionHandler(e -> finish(0));
+            if (operation == Mix.Operation.CREATE && status == 201) {
+                response.bodyHandler(body -> {
+                    owned.add(TodoJson.decode(body).getId());
+                    finish(status);
+                });
+            } else {
+                response.endHandler(v -> finish(status));
+            }
+        }
+
+        private void finish(int status) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            long now = System.nanoTime();
+            if (due >= measureFrom) {
+                total.record(due, sentAt, now, status);
+                operations.get(operation).record(due, sentAt, now, status);
+                if (status > 0) {
+                    lastResponse = Math.max(lastResponse, now);
+                }
+            }
+            inFlight--;
+            completeIfIdle();
+        }
+    }
+
+    static class Stats {
+
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LatencyHistogram serviceTime = new LatencyHistogram();
+        private final long[] responses = new long[CLASSES.length];
+
+        /** Counts every request, but only those answered have a latency, failing fast is not being fast. */
+        void record(long due, long sentAt, long now, int status) {
+            if (status > 0) {
+                latency.record(now - due);
+                serviceTime.record(now - (sentAt == 0 ? due : sentAt));
+            }
+            int statusClass = status / 100;
+            responses[statusClass > 0 && statusClass < CLASSES.length ? statusClass : 0]++;
+        }
+
+        LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        LatencyHistogram getServiceTime() {
+            return serviceTime;
+        }
+
+        long getResponses(int statusClass) {
+            return responses[statusClass];
+        }
+
+        long getRequests() {
+            long requests = 0;
+            for (long count : responses) {
+                requests += count;
+            }
+            return requests;
+        }
+
+        /** Requests that failed or were answered with a 4xx or 5xx. */
+        long getErrors() {
+            return responses[0] + responses[4] + responses[5];
+        }
+    }
+}
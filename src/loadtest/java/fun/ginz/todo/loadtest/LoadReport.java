@@ -0,0 +1,121 @@
+package fun.ginz.todo.loadtest;
+
+import fun.ginz.todo.metrics.LatencyHistogram;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The report of a run as JSON, for CI to keep and compare with the report of a later commit.
+ * Latencies are in microseconds and are the upper bounds of the histogram buckets they fall in,
+ * so they are off by at most 12.5%.
+ */
+final class LoadReport {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final String[] QUANTILE_NAMES = {"p50", "p90", "p99", "p99.9"};
+    /** The quantiles of a baseline a later run must not exceed, the tail beyond is too few requests to be stable. */
+    private static final String[] COMPARED = {"p50", "p99"};
+
+    private LoadReport() {}
+
+    static JsonObject create(JsonObject settings, LoadGenerator generator) {
+        LoadGenerator.Stats total = generator.getTotal();
+        double seconds = generator.getMeasuredNanos() / 1e9;
+        JsonObject report = new JsonObject()
+                .put("settings", settings)
+                .put("throughput", round((total.getRequests() - total.getErrors()) / seconds))
+                .put("requests", total.getRequests())
+                .put("errors", total.getErrors())
+                .put("responses", responses(total))
+                .put("latency", quantiles(total.getLatency()))
+                .put("service_time", quantiles(total.getServiceTime()));
+        JsonObject operations = new JsonObject();
+        for (Map.Entry<Mix.Operation, LoadGenerator.Stats> entry : generator.getOperations().entrySet()) {
+            LoadGenerator.Stats stats = entry.getValue();
+            if (stats.getRequests() > 0) {
+                operations.put(entry.getKey().getName(), new JsonObject()
+                        .put("requests", stats.getRequests())
+                        .put("errors", stats.getErrors())
+                        .put("latency", quantiles(stats.getLatency()))
+                        .put("service_time", quantiles(stats.getServiceTime())));
+            }
+        }
+        return report.put("operations", operations);
+    }
+
+    private static JsonObject responses(LoadGenerator.Stats stats) {
+        JsonObject responses = new JsonObject();
+        for (int i = 0; i < LoadGenerator.CLASSES.length; i++) {
+            if (stats.getResponses(i) > 0) {
+                responses.put(LoadGenerator.CLASSES[i], stats.getResponses(i));
+            }
+        }
+        return responses;
+    }
+
+    private static JsonObject quantiles(LatencyHistogram histogram) {
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        JsonObject quantiles = new JsonObject()
+                .put("mean", snapshot.getCount() == 0 ? 0 : round(snapshot.getSumNanos() / 1000.0 / snapshot.getCount()));
+        for (int i = 0; i < QUANTILES.length; i++) {
+            quantiles.put(QUANTILE_NAMES[i], snapshot.valueAt(QUANTILES[i]));
+        }
+        return quantiles.put("max", snapshot.valueAt(1));
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 10) / 10.0;
+    }
+
+    /**
+     * What got worse from {@code baseline} to {@code current}, empty when nothing did: throughput
+     * down by more than {@code throughputTolerance}, a compared latency quantile up by more than
+     * {@code latencyTolerance} plus {@code slackMicros}, or a larger share of errors. The slack
+     * keeps sub-millisecond latencies from failing on scheduling noise alone.
+     */
+    static List<String> compare(JsonObject baseline, JsonObject current,
+                                double throughputTolerance, double latencyTolerance, long slackMicros) {
+        List<String> regressions = new ArrayList<>();
+        JsonObject settings = current.getJsonObject("settings");
+        for (String key : new String[]{"mix", "rate", "service.type"}) {
+            Object expected = baseline.getJsonObject("settings").getValue(key);
+            if (expected != null && !expected.toString().equals(String.valueOf(settings.getValue(key)))) {
+                regressions.add("the baseline ran with " + key + " " + expected + ", this run with " + settings.getValue(key));
+            }
+        }
+        if (!regressions.isEmpty()) {
+            return regressions;
+        }
+
+        double throughput = current.getDouble("throughput");
+        double baseThroughput = baseline.getDouble("throughput");
+        if (throughput < baseThroughput * (1 - throughputTolerance)) {
+            regressions.add(String.format("throughput %.1f/s, baseline %.1f/s", throughput, baseThroughput));
+        }
+
+        JsonObject latency = current.getJsonObject("latency");
+        JsonObject baseLatency = baseline.getJsonObject("latency");
+        for (String quantile : COMPARED) {
+            long micros = latency.getLong(quantile);
+            long baseMicros = baseLatency.getLong(quantile);
+            if (micros > baseMicros * (1 + latencyTolerance) + slackMicros) {
+                regressions.add(String.format("latency %s %d us, baseline %d us", quantile, micros, baseMicros));
+            }
+        }
+
+        double errors = errorRatio(current);
+        double baseErrors = errorRatio(baseline);
+        if (errors > baseErrors && current.getLong("errors") > 0) {
+            regressions.add(String.format("%.3f%% errors, baseline %.3f%%", errors * 100, baseErrors * 100));
+        }
+        return regressions;
+    }
+
+    private static double errorRatio(JsonObject report) {
+        long requests = report.getLong("requests");
+        return requests == 0 ? 0 : (double) report.getLong("errors") / requests;
+    }
+}
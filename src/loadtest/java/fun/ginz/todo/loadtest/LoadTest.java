@@ -0,0 +1,280 @@
+package fun.ginz.todo.loadtest;
+
+import fun.ginz.todo.Contants;
+import fun.ginz.todo.codec.TodoJson;
+import fun.ginz.todo.entity.Todo;
+import fun.ginz.todo.verticles.MainVerticle;
+import io.vertx.core.Context;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import redis.embedded.RedisServer;
+
+import java.io.File;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Runs a {@link Mix} against the HTTP API at a fixed rate and writes a report of it, see
+ * {@link LoadGenerator} for how the load is paced and measured.
+ * <p>
+ * The arguments are {@code key=value} pairs, {@code load.*} for the load test and anything else
+ * for the server. Without {@code load.target} the server runs in this JVM with
+ * {@code service.type} memory, or redis against an embedded Redis on port 6399 unless
+ * {@code redis.host} is given. The client and the server then share the cores, which is fine for
+ * comparing commits on the same machine but not for absolute numbers.
+ * <p>
+ * The same {@code load.seed} sends the same sequence of requests. With {@code load.baseline}, the
+ * report of an earlier run, the exit code is 1 when this run regressed against it, for CI to fail
+ * the build on.
+ */
+public final class LoadTest {
+
+    private static final String MIX = "read-heavy";
+    private static final double RATE = 1000;
+    private static final long WARMUP = 10;
+    private static final long DURATION = 30;
+    private static final int CONNECTIONS = 16;
+    private static final int QUEUE = 10000;
+    private static final long TIMEOUT = 10000;
+    private static final int SIZE = 1000;
+    private static final int HOT = 8;
+    private static final int TITLE_LENGTH = 64;
+    private static final int PORT = 18083;
+    private static final int REDIS_PORT = 6399;
+    private static final int SEED_BATCH = 500;
+
+    private LoadTest() {}
+
+    public static void main(String[] args) throws Exception {
+        JsonObject config = parse(args);
+        Mix mix = Mix.forName(config.getString("load.mix", MIX));
+        double rate = config.getDouble("load.rate", RATE);
+        long warmup = config.getLong("load.warmup", WARMUP);
+        long duration = config.getLong("load.duration", DURATION);
+        int connections = config.getInteger("load.connections", CONNECTIONS);
+        int size = config.getInteger("load.size", SIZE);
+        int titleLength = config.getInteger("load.title-length", TITLE_LENGTH);
+
+        Vertx vertx = Vertx.vertx();
+        Context context = vertx.getOrCreateContext();
+        RedisServer redis = null;
+        int exitCode = 0;
+        try {
+            String host;
+            int port;
+            if (config.containsKey("load.target")) {
+                URI target = URI.create(config.getString("load.target"));
+                host = target.getHost();
+                port = target.getPort() < 0 ? 80 : target.getPort();
+            } else {
+                host = "127.0.0.1";
+                port = config.getInteger("http.port", PORT);
+                config.put("http.host", host).put("http.port", port);
+                config.put("service.type", config.getString("service.type", "memory"));
+                if ("redis".equals(config.getString("service.type")) && !config.containsKey("redis.host")) {
+                    redis = new RedisServer(config.getInteger("redis.port", REDIS_PORT));
+                    redis.start();
+                    config.put("redis.host", host).put("redis.port", config.getInteger("redis.port", REDIS_PORT));
+                }
+                if ("memory".equals(config.getString("service.type")) && !config.containsKey("memory.dir")) {
+                    File dir = Files.createTempDirectory("todo-load").toFile();
+                    dir.deleteOnExit();
+                    config.put("memory.dir", dir.getAbsolutePath());
+                }
+                DeploymentOptions options = new DeploymentOptions().setConfig(config);
+                await(context, () -> {
+                    Future<String> deployed = Future.future();
+                    vertx.deployVerticle(MainVerticle.class.getName(), options, deployed);
+                    return deployed;
+                });
+            }
+
+            HttpClient client = vertx.createHttpClient(new HttpClientOptions()
+                    .setDefaultHost(host)
+                    .setDefaultPort(port)
+                    .setKeepAlive(true)
+                    .setMaxPoolSize(connections)
+                    .setMaxWaitQueueSize(config.getInteger("load.queue", QUEUE)));
+            int[] ids = seed(context, client, size, titleLength);
+
+            Todo completed = new Todo();
+            completed.setCompleted(true);
+            LoadGenerator generator = new LoadGenerator(vertx, client, mix, rate,
+                    config.getLong("load.timeout", TIMEOUT), config.getLong("load.seed", 1L), ids,
+                    config.getInteger("load.hot", HOT),
+                    TodoJson.encode(new Todo(0, title(titleLength), false, 0, null), false),
+                    TodoJson.encode(completed, false));
+            System.out.printf("%s at %.0f requests/s over %d connections, %d s warm-up and %d s measured%n",
+                    mix.getName(), rate, connections, warmup, duration);
+            await(context, () -> generator.run(TimeUnit.SECONDS.toNanos(warmup), TimeUnit.SECONDS.toNanos(duration)));
+
+            JsonObject settings = new JsonObject()
+                    .put("mix", mix.getName())
+                    .put("rate", rate)
+                    .put("warmup", warmup)
+                    .put("duration", duration)
+                    .put("connections", connections)
+                    .put("size", size)
+                    .put("title_length", titleLength)
+                    .put("service.type", config.containsKey("load.target") ? null : config.getString("service.type"));
+            JsonObject report = LoadReport.create(settings, generator);
+            print(report);
+
+            File reports = new File(config.getString("load.reports", "."));
+            reports.mkdirs();
+            File file = new File(reports, mix.getName() + ".json");
+            Files.write(file.toPath(), report.encodePrettily().getBytes(StandardCharsets.UTF_8));
+            System.out.println("report written to " + file);
+
+            if (config.containsKey("load.baseline")) {
+                File baselineFile = new File(config.getString("load.baseline"));
+                JsonObject baseline = new JsonObject(new String(Files.readAllBytes(baselineFile.toPath()), StandardCharsets.UTF_8));
+                List<String> regressions = LoadReport.compare(baseline, report,
+                        config.getDouble("load.tolerance.throughput", 0.1),
+                        config.getDouble("load.tolerance.latency", 0.25),
+                        config.getLong("load.tolerance.slack", 500L));
+                if (regressions.isEmpty()) {
+                    System.out.println("no regression against " + baselineFile);
+                } else {
+                    System.out.println("regressed against " + baselineFile + ":");
+                    regressions.forEach(regression -> System.out.println("  " + regression));
+                    exitCode = 1;
+                }
+            }
+        } finally {
+            await(context, () -> {
+                Future<Void> closed = Future.future();
+                vertx.close(closed);
+                return closed;
+            });
+            if (redis != null) {
+                redis.stop();
+            }
+        }
+        System.exit(exitCode);
+    }
+
+    /** {@code key=value} pairs into a config, the values typed as the verticles read them. */
+    private static JsonObject parse(String[] args) {
+        JsonObject config = new JsonObject();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (equals <= 0) {
+                throw new IllegalArgumentException("expected key=value, got " + arg);
+            }
+            String value = arg.substring(equals + 1);
+            Object typed = value;
+            if ("true".equals(value) || "false".equals(value)) {
+                typed = Boolean.valueOf(value);
+            } else {
+                try {
+                    typed = Long.valueOf(value);
+                } catch (NumberFormatException notLong) {
+                    try {
+                        typed = Double.valueOf(value);
+                    } catch (NumberFormatException notNumber) {
+                        // a string then
+                    }
+                }
+            }
+            config.put(arg.substring(0, equals), typed);
+        }
+        return config;
+    }
+
+    private static String title(int length) {
+        StringBuilder title = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            title.append((char) ('a' + i % 26));
+        }
+        return title.toString();
+    }
+
+    /** Empties the store and bulk creates {@code size} todos, returning their ids. */
+    private static int[] seed(Context context, HttpClient client, int size, int titleLength) throws Exception {
+        request(context, client, HttpMethod.DELETE, Contants.API_DEL_ALL, null);
+        List<Integer> ids = new ArrayList<>(size);
+        while (ids.size() < size) {
+            JsonArray batch = new JsonArray();
+            for (int i = 0, n = Math.min(SEED_BATCH, size - ids.size()); i < n; i++) {
+                batch.add(new Todo(0, title(titleLength), i % 2 == 0, ids.size() + i, null).toPatch());
+            }
+            for (Todo todo : TodoJson.decodeArray(request(context, client, HttpMethod.POST, Contants.API_BULK, batch.toBuffer()))) {
+                ids.add(todo.getId());
+            }
+        }
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    // the response handler has no undeprecated setter before Vert.x 3.8's setHandler
+    @SuppressWarnings("deprecation")
+    private static Buffer request(Context context, HttpClient client, HttpMethod method, String uri, Buffer body) throws Exception {
+        return await(context, () -> {
+            Future<Buffer> response = Future.future();
+            HttpClientRequest request = client.request(method, uri).handler(res -> {
+                if (res.statusCode() >= 300) {
+                    response.fail(method + " " + uri + " returned " + res.statusCode());
+                    return;
+                }
+                res.bodyHandler(response::complete);
+            });
+            request.exceptionHandler(response::fail);
+            if (body == null) {
+                request.end();
+            } else {
+                request.putHeader("Content-Type", "application/json").end(body);
+            }
+            return response;
+        });
+    }
+
+    private static void print(JsonObject report) {
+        System.out.printf("%-12s %10s %8s %10s %10s %10s %10s %10s%n",
+                "operation", "requests", "errors", "p50 us", "p90 us", "p99 us", "p99.9 us", "max us");
+        row("total", report);
+        for (Map.Entry<String, Object> operation : report.getJsonObject("operations")) {
+            row(operation.getKey(), (JsonObject) operation.getValue());
+        }
+        JsonObject serviceTime = report.getJsonObject("service_time");
+        System.out.printf("throughput %.1f/s, service time p50 %d us, p99 %d us (what a closed-loop client would see)%n",
+                report.getDouble("throughput"), serviceTime.getLong("p50"), serviceTime.getLong("p99"));
+    }
+
+    private static void row(String name, JsonObject stats) {
+        JsonObject latency = stats.getJsonObject("latency");
+        System.out.printf("%-12s %10d %8d %10d %10d %10d %10d %10d%n", name,
+                stats.getLong("requests"), stats.getLong("errors"), latency.getLong("p50"), latency.getLong("p90"),
+                latency.getLong("p99"), latency.getLong("p99.9"), latency.getLong("max"));
+    }
+
+    /**
+     * Runs {@code call} on {@code context} and blocks the main thread until it completes. The
+     * generator and the client are only ever used from that one context.
+     */
+    private static <T> T await(Context context, Supplier<Future<T>> call) throws Exception {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        context.runOnContext(v -> call.get().setHandler(ar -> {
+            if (ar.succeeded()) {
+                result.complete(ar.result());
+            } else {
+                result.completeExceptionally(ar.cause());
+            }
+        }));
+        return result.get(5, TimeUnit.MINUTES);
+    }
+}
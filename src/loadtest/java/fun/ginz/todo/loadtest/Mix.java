@@ -0,0 +1,85 @@
+package fun.ginz.todo.loadtest;
+
+import java.util.Random;
+
+/**
+ * The scripted request mixes, each a weighted choice over the operations of {@link Operation}.
+ */
+enum Mix {
+
+    /** Point reads and page listings, with an occasional PATCH invalidating what is cached. */
+    READ_HEAVY("read-heavy",
+            new Operation[]{Operation.GET_ONE, Operation.GET_PAGE, Operation.UPDATE},
+            new int[]{80, 15, 5}),
+
+    /** Creates, PATCHes and deletes of the todos created, and a few reads. */
+    WRITE_HEAVY("write-heavy",
+            new Operation[]{Operation.CREATE, Operation.UPDATE, Operation.DELETE_ONE, Operation.GET_ONE},
+            new int[]{40, 40, 10, 10}),
+
+    /** PATCHes piling up on a handful of hot ids, and reads of the same ids. */
+    PATCH_CONTENTION("patch-contention",
+            new Operation[]{Operation.UPDATE_HOT, Operation.GET_HOT},
+            new int[]{90, 10});
+
+    private final String name;
+    private final Operation[] operations;
+    private final int[] weights;
+    private final int total;
+
+    Mix(String name, Operation[] operations, int[] weights) {
+        this.name = name;
+        this.operations = operations;
+        this.weights = weights;
+        int sum = 0;
+        for (int weight : weights) {
+            sum += weight;
+        }
+        this.total = sum;
+    }
+
+    static Mix forName(String name) {
+        for (Mix mix : values()) {
+            if (mix.name.equals(name)) {
+                return mix;
+            }
+        }
+        throw new IllegalArgumentException("unknown load.mix " + name + ", expected read-heavy, write-heavy or patch-contention");
+    }
+
+    String getName() {
+        return name;
+    }
+
+    Operation pick(Random random) {
+        int roll = random.nextInt(total);
+        for (int i = 0; i < operations.length; i++) {
+            roll -= weights[i];
+            if (roll < 0) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    /** The requests a mix is made of, named like the routes in the server metrics where they match one. */
+    enum Operation {
+        GET_ONE("get_one"),
+        GET_PAGE("get_all"),
+        CREATE("create"),
+        UPDATE("update"),
+        DELETE_ONE("delete_one"),
+        UPDATE_HOT("update_hot"),
+        GET_HOT("get_hot");
+
+        private final String name;
+
+        Operation(String name) {
+            this.name = name;
+        }
+
+        String getName() {
+            return name;
+        }
+    }
+}
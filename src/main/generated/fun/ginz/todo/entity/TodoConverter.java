@@ -39,6 +39,11 @@ public class TodoConverter {
             obj.setUrl((String)member.getValue());
           }
           break;
+        case "version":
+          if (member.getValue() instanceof Number) {
+            obj.setVersion(((Number)member.getValue()).longValue());
+          }
+          break;
       }
     }
   }
@@ -61,5 +66,6 @@ public class TodoConverter {
     if (obj.getUrl() != null) {
       json.put("url", obj.getUrl());
     }
+    json.put("version", obj.getVersion());
   }
 }
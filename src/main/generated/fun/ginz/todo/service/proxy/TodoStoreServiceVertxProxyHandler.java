@@ -0,0 +1,221 @@
+/*
+* Copyright 2014 Red Hat, Inc.
+*
+* Red Hat licenses this file to you under the Apache License, version 2.0
+* (the "License"); you may not use this file except in compliance with the
+* License. You may obtain a copy of the License at:
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+* WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+* License for the specific language governing permissions and limitations
+* under the License.
+*/
+
+package fun.ginz.todo.service.proxy;
+
+import fun.ginz.todo.service.proxy.TodoStoreService;
+import io.vertx.core.Vertx;
+import io.vertx.core.Handler;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.json.JsonArray;
+import java.util.Collection;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import io.vertx.serviceproxy.ProxyHelper;
+import io.vertx.serviceproxy.ProxyHandler;
+import io.vertx.serviceproxy.ServiceException;
+import io.vertx.serviceproxy.ServiceExceptionMessageCodec;
+import io.vertx.serviceproxy.HelperUtils;
+
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.Vertx;
+import fun.ginz.todo.entity.Todo;
+import fun.ginz.todo.service.proxy.TodoStoreService;
+import java.util.List;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+/*
+  Generated Proxy code - DO NOT EDIT
+  @author Roger the Robot
+*/
+
+@SuppressWarnings({"unchecked", "rawtypes"})
+public class TodoStoreServiceVertxProxyHandler extends ProxyHandler {
+
+  public static final long DEFAULT_CONNECTION_TIMEOUT = 5 * 60; // 5 minutes 
+  private final Vertx vertx;
+  private final TodoStoreService service;
+  private final long timerID;
+  private long lastAccessed;
+  private final long timeoutSeconds;
+
+  public TodoStoreServiceVertxProxyHandler(Vertx vertx, TodoStoreService service){
+    this(vertx, service, DEFAULT_CONNECTION_TIMEOUT);
+  }
+
+  public TodoStoreServiceVertxProxyHandler(Vertx vertx, TodoStoreService service, long timeoutInSecond){
+    this(vertx, service, true, timeoutInSecond);
+  }
+
+  public TodoStoreServiceVertxProxyHandler(Vertx vertx, TodoStoreService service, boolean topLevel, long timeoutSeconds) {
+      this.vertx = vertx;
+      this.service = service;
+      this.timeoutSeconds = timeoutSeconds;
+      try {
+        this.vertx.eventBus().registerDefaultCodec(ServiceException.class,
+            new ServiceExceptionMessageCodec());
+      } catch (IllegalStateException ex) {}
+      if (timeoutSeconds != -1 && !topLevel) {
+        long period = timeoutSeconds * 1000 / 2;
+        if (period > 10000) {
+          period = 10000;
+        }
+        this.timerID = vertx.setPeriodic(period, this::checkTimedOut);
+      } else {
+        this.timerID = -1;
+      }
+      accessed();
+    }
+
+
+  private void checkTimedOut(long id) {
+    long now = System.nanoTime();
+    if (now - lastAccessed > timeoutSeconds * 1000000000) {
+      close();
+    }
+  }
+
+    @Override
+    public void close() {
+      if (timerID != -1) {
+        vertx.cancelTimer(timerID);
+      }
+      super.close();
+    }
+
+    private void accessed() {
+      this.lastAccessed = System.nanoTime();
+    }
+
+  public void handle(Message<JsonObject> msg) {
+    try{
+      JsonObject json = msg.body();
+      String action = msg.headers().get("action");
+      if (action == null) throw new IllegalStateException("action not specified");
+      accessed();
+      switch (action) {
+        case "initData": {
+          service.initData(HelperUtils.createHandler(msg));
+          break;
+        }
+        case "insertAll": {
+          service.insertAll(json.getJsonArray("todos").stream().map(o -> o == null ? null : new fun.ginz.todo.entity.Todo((JsonObject)o)).collect(Collectors.toList()),
+                        res -> {
+                        if (res.failed()) {
+                          if (res.cause() instanceof ServiceException) {
+                            msg.reply(res.cause());
+                          } else {
+                            msg.reply(new ServiceException(-1, res.cause().getMessage()));
+                          }
+                        } else {
+                          msg.reply(new JsonArray(res.result().stream().map(r -> r == null ? null : r.toJson()).collect(Collectors.toList())));
+                        }
+                     });
+          break;
+        }
+        case "getAll": {
+          service.getAll(res -> {
+                        if (res.failed()) {
+                          if (res.cause() instanceof ServiceException) {
+                            msg.reply(res.cause());
+                          } else {
+                            msg.reply(new ServiceException(-1, res.cause().getMessage()));
+                          }
+                        } else {
+                          msg.reply(new JsonArray(res.result().stream().map(r -> r == null ? null : r.toJson()).collect(Collectors.toList())));
+                        }
+                     });
+          break;
+        }
+        case "scanRaw": {
+          service.scanRaw((java.lang.String)json.getValue("cursor"),
+                        json.getValue("count") == null ? null : (json.getLong("count").intValue()),
+                        HelperUtils.createHandler(msg));
+          break;
+        }
+        case "queryRaw": {
+          service.queryRaw((io.vertx.core.json.JsonObject)json.getValue("query"),
+                        HelperUtils.createHandler(msg));
+          break;
+        }
+        case "getManyRaw": {
+          service.getManyRaw(HelperUtils.convertList(json.getJsonArray("todoIDs").getList()),
+                        HelperUtils.createListHandler(msg));
+          break;
+        }
+        case "updateAll": {
+          service.updateAll(HelperUtils.convertList(json.getJsonArray("patches").getList()),
+                        res -> {
+                        if (res.failed()) {
+                          if (res.cause() instanceof ServiceException) {
+                            msg.reply(res.cause());
+                          } else {
+                            msg.reply(new ServiceException(-1, res.cause().getMessage()));
+                          }
+                        } else {
+                          msg.reply(new JsonArray(res.result().stream().map(r -> r == null ? null : r.toJson()).collect(Collectors.toList())));
+                        }
+                     });
+          break;
+        }
+        case "deleteMany": {
+          service.deleteMany(HelperUtils.convertList(json.getJsonArray("todoIDs").getList()),
+                        HelperUtils.createHandler(msg));
+          break;
+        }
+        case "deleteAll": {
+          service.deleteAll(HelperUtils.createHandler(msg));
+          break;
+        }
+        case "version": {
+          service.version(HelperUtils.createHandler(msg));
+          break;
+        }
+        case "changes": {
+          service.changes((java.lang.String)json.getValue("since"),
+                        json.getValue("limit") == null ? null : (json.getLong("limit").intValue()),
+                        HelperUtils.createHandler(msg));
+          break;
+        }
+        case "nextId": {
+          service.nextId(HelperUtils.createHandler(msg));
+          break;
+        }
+        case "observeId": {
+          service.observeId(json.getValue("id") == null ? null : (json.getLong("id").intValue()),
+                        HelperUtils.createHandler(msg));
+          break;
+        }
+        default: throw new IllegalStateException("Invalid action: " + action);
+      }
+    } catch (Throwable t) {
+      msg.reply(new ServiceException(500, t.getMessage()));
+      throw t;
+    }
+  }
+}
\ No newline at end of file
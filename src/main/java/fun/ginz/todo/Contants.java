@@ -7,6 +7,22 @@ public final class Contants {
     public static final String API_UPDATE = "/todos/:todoId";
     public static final String API_DEL_ONE = "/todos/:todoId";
     public static final String API_DEL_ALL = "/todos";
+    public static final String API_BULK = "/todos/_bulk";
+    public static final String API_FEED = "/todos/_feed";
+    public static final String API_METRICS = "/metrics";
+
+    public static final String HEADER_NEXT_CURSOR = "X-Next-Cursor";
 
     public static final String REDIS_TODO_KEY = "VERT_TODO";
+    public static final String REDIS_ORDER_INDEX = "VERT_TODO:order";
+    public static final String REDIS_OPEN_INDEX = "VERT_TODO:open";
+    public static final String REDIS_DONE_INDEX = "VERT_TODO:done";
+    public static final String REDIS_VERSION_KEY = "VERT_TODO:version";
+    public static final String REDIS_CHANGES_KEY = "VERT_TODO:changes";
+    public static final String REDIS_TOMBSTONES_KEY = "VERT_TODO:tombstones";
+    public static final String REDIS_HORIZON_KEY = "VERT_TODO:horizon";
+    public static final String REDIS_ID_KEY = "VERT_TODO_ID";
+    public static final String REDIS_INVALIDATE_CHANNEL = "VERT_TODO_INVALIDATE";
+
+    public static final String EVENT_TODO_CHANGES = "fun.ginz.todo.changes";
 }
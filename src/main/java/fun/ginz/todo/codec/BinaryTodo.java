@@ -0,0 +1,185 @@
+package fun.ginz.todo.codec;
+
+import fun.ginz.todo.entity.Todo;
+import io.vertx.core.buffer.Buffer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Read-only view of a todo in the {@link BinaryTodoCodec} layout, reading straight from the
+ * buffer it was received in. The fixed fields are read on every call; the strings are only
+ * decoded when asked for, and {@link #toJson()} copies their bytes without decoding them.
+ */
+public class BinaryTodo {
+
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+
+    private final Buffer buffer;
+    private final int titleOffset;
+    private String title;
+    private String url;
+
+    public BinaryTodo(Buffer buffer) {
+        this.buffer = buffer;
+        this.titleOffset = buffer.getByte(0) == BinaryTodoCodec.FORMAT_V1
+                ? BinaryTodoCodec.TITLE_V1 : BinaryTodoCodec.TITLE;
+    }
+
+    public int getId() {
+        return buffer.getInt(BinaryTodoCodec.ID);
+    }
+
+    public boolean getCompleted() {
+        return (buffer.getByte(BinaryTodoCodec.FLAGS) & BinaryTodoCodec.COMPLETED) != 0;
+    }
+
+    public int getOrder() {
+        return buffer.getInt(BinaryTodoCodec.ORDER);
+    }
+
+    public long getVersion() {
+        return titleOffset == BinaryTodoCodec.TITLE_V1 ? 0 : buffer.getLong(BinaryTodoCodec.VERSION);
+    }
+
+    private int urlOffset() {
+        int length = buffer.getInt(titleOffset);
+        return titleOffset + 4 + Math.max(length, 0);
+    }
+
+    private String string(int offset) {
+        int length = buffer.getInt(offset);
+        return length < 0 ? null : buffer.getString(offset + 4, offset + 4 + length, "UTF-8");
+    }
+
+    public String getTitle() {
+        if (title == null) {
+            title = string(titleOffset);
+        }
+        return title;
+    }
+
+    public String getUrl() {
+        if (url == null) {
+            url = string(urlOffset());
+        }
+        return url;
+    }
+
+    public Todo toTodo() {
+        Todo todo = new Todo(getId(), getTitle(), getCompleted(), getOrder(), getUrl());
+        todo.setVersion(getVersion());
+        return todo;
+    }
+
+    /** Renders the same compact JSON document Jackson writes for a {@link Todo}. */
+    public String toJson() {
+        byte[] record = buffer.getBytes();
+        JsonBytes json = new JsonBytes(record.length + 96);
+        json.append("{\"id\":").append(Integer.toString(getId())).append(",\"title\":");
+        json.appendString(record, titleOffset);
+        json.append(",\"completed\":").append(getCompleted() ? "true" : "false")
+                .append(",\"order\":").append(Integer.toString(getOrder()))
+                .append(",\"url\":");
+        json.appendString(record, urlOffset());
+        json.append(",\"version\":").append(Long.toString(getVersion())).append("}");
+        return json.toString();
+    }
+
+    /** Growable byte array holding the JSON document while it is written. */
+    private static class JsonBytes {
+
+        private byte[] bytes;
+        private int length;
+
+        JsonBytes(int capacity) {
+            bytes = new byte[capacity];
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+            }
+        }
+
+        JsonBytes append(String ascii) {
+            ensure(ascii.length());
+            for (int i = 0; i < ascii.length(); i++) {
+                bytes[length++] = (byte) ascii.charAt(i);
+            }
+            return this;
+        }
+
+        private void appendByte(byte b) {
+            ensure(1);
+            bytes[length++] = b;
+        }
+
+        void appendString(byte[] record, int offset) {
+            int size = (record[offset] & 0xFF) << 24 | (record[offset + 1] & 0xFF) << 16
+                    | (record[offset + 2] & 0xFF) << 8 | (record[offset + 3] & 0xFF);
+            if (size < 0) {
+                append("null");
+                return;
+            }
+            int start = offset + 4;
+            int end = start + size;
+            ensure(size + 2);
+            bytes[length++] = '"';
+            // bytes of multi-byte UTF-8 sequences are all >= 0x80 and can be copied as they are
+            int run = start;
+            for (int i = start; i < end; i++) {
+                byte b = record[i];
+                if (b < 0 || (b >= 0x20 && b != '"' && b != '\\')) {
+                    continue;
+                }
+                copy(record, run, i);
+                escape(b);
+                run = i + 1;
+            }
+            copy(record, run, end);
+            appendByte((byte) '"');
+        }
+
+        private void copy(byte[] record, int from, int to) {
+            ensure(to - from);
+            System.arraycopy(record, from, bytes, length, to - from);
+            length += to - from;
+        }
+
+        private void escape(byte b) {
+            switch (b) {
+                case '"':
+                    append("\\\"");
+                    break;
+                case '\\':
+                    append("\\\\");
+                    break;
+                case '\b':
+                    append("\\b");
+                    break;
+                case '\f':
+                    append("\\f");
+                    break;
+                case '\n':
+                    append("\\n");
+                    break;
+                case '\r':
+                    append("\\r");
+                    break;
+                case '\t':
+                    append("\\t");
+                    break;
+                default:
+                    append("\\u00");
+                    appendByte(HEX[b >> 4]);
+                    appendByte(HEX[b & 0xF]);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package fun.ginz.todo.codec;
+
+import fun.ginz.todo.entity.Todo;
+import io.vertx.core.buffer.Buffer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Fixed-layout binary format, all integers big-endian:
+ * <pre>
+ * 0   format      byte, {@link #FORMAT}; JSON records start with '{' instead
+ * 1   id          int
+ * 5   flags       byte, bit 0 is completed
+ * 6   order       int
+ * 10  version     long
+ * 18  title       int length (-1 for null) followed by that many UTF-8 bytes
+ * ..  url         same as title
+ * </pre>
+ * Records of format {@link #FORMAT_V1} have no version, their title starts at 10. They are still
+ * read, and rewritten in the current format on their next update.
+ * The Redis scripts read and write this layout too, so keep lua/insert.lua, lua/update.lua and
+ * lua/reindex.lua in step when it changes.
+ */
+public class BinaryTodoCodec implements TodoCodec {
+
+    public static final byte FORMAT = 2;
+    public static final byte FORMAT_V1 = 1;
+
+    static final int ID = 1;
+    static final int FLAGS = 5;
+    static final int ORDER = 6;
+    static final int VERSION = 10;
+    static final int TITLE = 18;
+    static final int TITLE_V1 = 10;
+
+    static final int COMPLETED = 1;
+
+    @Override
+    public Buffer encode(Todo todo) {
+        byte[] title = bytes(todo.getTitle());
+        byte[] url = bytes(todo.getUrl());
+        Buffer buffer = Buffer.buffer(TITLE + 8 + length(title) + length(url))
+                .appendByte(FORMAT)
+                .appendInt(todo.getId())
+                .appendByte((byte) (todo.getCompleted() ? COMPLETED : 0))
+                .appendInt(todo.getOrder())
+                .appendLong(todo.getVersion());
+        appendString(buffer, title);
+        appendString(buffer, url);
+        return buffer;
+    }
+
+    private static byte[] bytes(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int length(byte[] value) {
+        return value == null ? 0 : value.length;
+    }
+
+    private static void appendString(Buffer buffer, byte[] value) {
+        if (value == null) {
+            buffer.appendInt(-1);
+        } else {
+            buffer.appendInt(value.length).appendBytes(value);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package fun.ginz.todo.codec;
+
+import fun.ginz.todo.entity.Todo;
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * The original format: the todo as a JSON document, compact unless {@code prettyJson}. The Redis
+ * scripts store it as encoded here, only the version number is written in, and render merged
+ * todos with the same field order, escaping and layout.
+ */
+public class JsonTodoCodec implements TodoCodec {
+
+    private final boolean prettyJson;
+
+    public JsonTodoCodec(boolean prettyJson) {
+        this.prettyJson = prettyJson;
+    }
+
+    @Override
+    public Buffer encode(Todo todo) {
+        return TodoJson.encode(todo, prettyJson);
+    }
+
+    @Override
+    public boolean isPrettyJson() {
+        return prettyJson;
+    }
+
+    static Todo decode(Buffer stored) {
+        return TodoJson.decode(stored);
+    }
+
+    /**
+     * Reads the version of a todo document without parsing it, or returns 0 when it has none.
+     * Quotes inside strings are escaped, so an unescaped {@code "version"} followed by a colon can
+     * only be the key itself.
+     */
+    public static long version(String json) {
+        for (int key = json.lastIndexOf("\"version\""); key >= 0; key = json.lastIndexOf("\"version\"", key - 1)) {
+            int i = skipSpace(json, key + 9);
+            if (i < json.length() && json.charAt(i) == ':') {
+                return number(json, skipSpace(json, i + 1));
+            }
+        }
+        return 0;
+    }
+
+    /** Reads the id of a todo document the same way, or returns 0 when it has none. */
+    public static int id(String json) {
+        for (int key = json.indexOf("\"id\""); key >= 0; key = json.indexOf("\"id\"", key + 4)) {
+            int i = skipSpace(json, key + 4);
+            if (i < json.length() && json.charAt(i) == ':') {
+                return (int) number(json, skipSpace(json, i + 1));
+            }
+        }
+        return 0;
+    }
+
+    private static long number(String json, int i) {
+        long value = 0;
+        for (; i < json.length() && json.charAt(i) >= '0' && json.charAt(i) <= '9'; i++) {
+            value = value * 10 + json.charAt(i) - '0';
+        }
+        return value;
+    }
+
+    private static int skipSpace(String json, int i) {
+        while (i < json.length() && Character.isWhitespace(json.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+}
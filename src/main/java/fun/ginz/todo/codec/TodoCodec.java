@@ -0,0 +1,46 @@
+package fun.ginz.todo.codec;
+
+import fun.ginz.todo.entity.Todo;
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * Storage format of a todo. Only writing depends on the codec in use: reading looks at the
+ * first byte, so records written in either format stay readable after switching.
+ */
+public interface TodoCodec {
+
+    Buffer encode(Todo todo);
+
+    /** Whether JSON written in this format is pretty printed, which the Redis update script follows. */
+    default boolean isPrettyJson() {
+        return false;
+    }
+
+    static TodoCodec forName(String format, boolean prettyJson) {
+        switch (format) {
+            case "binary":
+                return new BinaryTodoCodec();
+            case "json":
+                return new JsonTodoCodec(prettyJson);
+            default:
+                throw new IllegalArgumentException("unknown todo format: " + format);
+        }
+    }
+
+    static boolean isBinary(Buffer stored) {
+        if (stored.length() == 0) {
+            return false;
+        }
+        byte format = stored.getByte(0);
+        return format == BinaryTodoCodec.FORMAT || format == BinaryTodoCodec.FORMAT_V1;
+    }
+
+    static Todo decode(Buffer stored) {
+        return isBinary(stored) ? new BinaryTodo(stored).toTodo() : JsonTodoCodec.decode(stored);
+    }
+
+    /** The stored record as a JSON document, as handed out by the raw service methods. */
+    static String toJson(Buffer stored) {
+        return isBinary(stored) ? new BinaryTodo(stored).toJson() : stored.toString();
+    }
+}
@@ -0,0 +1,207 @@
+package fun.ginz.todo.codec;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import fun.ginz.todo.entity.Todo;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.DecodeException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and writes todos as JSON with Jackson's streaming parser and generator, without the
+ * intermediate {@link io.vertx.core.json.JsonObject} or the data binding. Reading is as lenient as
+ * the generated converter: unknown fields, nulls and values of the wrong type are skipped. Writing
+ * gives the same document as {@link io.vertx.core.json.Json#encode(Object)}, and goes through the
+ * generator's buffer, which Jackson recycles per thread, straight into the returned {@link Buffer}.
+ */
+public final class TodoJson {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private TodoJson() {
+    }
+
+    public static Todo decode(String json) {
+        try (JsonParser parser = FACTORY.createParser(json)) {
+            return readOne(parser);
+        } catch (IOException e) {
+            throw new DecodeException("Failed to decode todo: " + e.getMessage());
+        }
+    }
+
+    public static Todo decode(Buffer json) {
+        try (JsonParser parser = FACTORY.createParser(json.getBytes())) {
+            return readOne(parser);
+        } catch (IOException e) {
+            throw new DecodeException("Failed to decode todo: " + e.getMessage());
+        }
+    }
+
+    /** Reads an array of todos, as the bulk routes take them. */
+    public static List<Todo> decodeArray(Buffer json) {
+        try (JsonParser parser = FACTORY.createParser(json.getBytes())) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new DecodeException("Failed to decode todos: not an array");
+            }
+            List<Todo> todos = new ArrayList<>();
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (parser.currentToken() != JsonToken.START_OBJECT) {
+                    throw new DecodeException("Failed to decode todos: not an object at " + todos.size());
+                }
+                todos.add(readFields(parser));
+            }
+            return todos;
+        } catch (IOException e) {
+            throw new DecodeException("Failed to decode todos: " + e.getMessage());
+        }
+    }
+
+    private static Todo readOne(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new DecodeException("Failed to decode todo: not an object");
+        }
+        return readFields(parser);
+    }
+
+    private static Todo readFields(JsonParser parser) throws IOException {
+        Todo todo = new Todo();
+        for (String field = parser.nextFieldName(); field != null; field = parser.nextFieldName()) {
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "id":
+                    if (value.isNumeric()) {
+                        todo.setId(intValue(parser));
+                    }
+                    break;
+                case "title":
+                    if (value == JsonToken.VALUE_STRING) {
+                        todo.setTitle(parser.getText());
+                    }
+                    break;
+                case "completed":
+                    if (value.isBoolean()) {
+                        todo.setCompleted(value == JsonToken.VALUE_TRUE);
+                    }
+                    break;
+                case "order":
+                    if (value.isNumeric()) {
+                        todo.setOrder(intValue(parser));
+                    }
+                    break;
+                case "url":
+                    if (value == JsonToken.VALUE_STRING) {
+                        todo.setUrl(parser.getText());
+                    }
+                    break;
+                case "version":
+                    if (value.isNumeric()) {
+                        todo.setVersion(longValue(parser));
+                    }
+                    break;
+                default:
+                    break;
+            }
+            parser.skipChildren();
+        }
+        if (parser.currentToken() != JsonToken.END_OBJECT) {
+            throw new DecodeException("Failed to decode todo: unexpected " + parser.currentToken());
+        }
+        return todo;
+    }
+
+    private static int intValue(JsonParser parser) throws IOException {
+        // out of range or fractional numbers are cut down the way Number.intValue() does in the converter
+        return parser.getNumberType() == JsonParser.NumberType.INT
+                ? parser.getIntValue() : parser.getNumberValue().intValue();
+    }
+
+    private static long longValue(JsonParser parser) throws IOException {
+        JsonParser.NumberType type = parser.getNumberType();
+        return type == JsonParser.NumberType.INT || type == JsonParser.NumberType.LONG
+                ? parser.getLongValue() : parser.getNumberValue().longValue();
+    }
+
+    public static Buffer encode(Todo todo, boolean pretty) {
+        Buffer buffer = Buffer.buffer(sizeHint(todo));
+        try (JsonGenerator generator = generator(buffer, pretty)) {
+            write(generator, todo);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return buffer;
+    }
+
+    /** Writes an array of todos, a todo that is null, as from a bulk update of a missing id, as null. */
+    public static Buffer encode(List<Todo> todos, boolean pretty) {
+        int hint = 2;
+        for (Todo todo : todos) {
+            hint += todo == null ? 5 : sizeHint(todo);
+        }
+        Buffer buffer = Buffer.buffer(hint);
+        try (JsonGenerator generator = generator(buffer, pretty)) {
+            generator.writeStartArray();
+            for (Todo todo : todos) {
+                if (todo == null) {
+                    generator.writeNull();
+                } else {
+                    write(generator, todo);
+                }
+            }
+            generator.writeEndArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return buffer;
+    }
+
+    private static JsonGenerator generator(Buffer buffer, boolean pretty) throws IOException {
+        JsonGenerator generator = FACTORY.createGenerator(new BufferOutput(buffer));
+        return pretty ? generator.useDefaultPrettyPrinter() : generator;
+    }
+
+    private static void write(JsonGenerator generator, Todo todo) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("id", todo.getId());
+        generator.writeStringField("title", todo.getTitle());
+        generator.writeBooleanField("completed", todo.getCompleted());
+        generator.writeNumberField("order", todo.getOrder());
+        generator.writeStringField("url", todo.getUrl());
+        generator.writeNumberField("version", todo.getVersion());
+        generator.writeEndObject();
+    }
+
+    private static int sizeHint(Todo todo) {
+        int hint = 96;
+        if (todo.getTitle() != null) {
+            hint += todo.getTitle().length();
+        }
+        if (todo.getUrl() != null) {
+            hint += todo.getUrl().length();
+        }
+        return hint;
+    }
+
+    private static final class BufferOutput extends OutputStream {
+        private final Buffer buffer;
+
+        private BufferOutput(Buffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void write(int b) {
+            buffer.appendByte((byte) b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            buffer.appendBytes(bytes, offset, length);
+        }
+    }
+}
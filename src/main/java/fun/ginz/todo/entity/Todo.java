@@ -5,17 +5,15 @@ import io.vertx.core.json.JsonObject;
 
 import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.atomic.AtomicInteger;
 
 @DataObject(generateConverter = true)
 public class Todo {
-    private static final AtomicInteger acc = new AtomicInteger(0);
-
     private int id;
     private String title;
     private Boolean completed;
     private Integer order;
     private String url;
+    private long version;
 
     public Todo() {}
 
@@ -25,6 +23,7 @@ public class Todo {
         this.completed = other.completed;
         this.order = other.order;
         this.url = other.url;
+        this.version = other.version;
     }
 
     public Todo(JsonObject obj) {
@@ -57,18 +56,6 @@ public class Todo {
         this.id = id;
     }
 
-    public void setIncId() {
-        this.id = acc.incrementAndGet();
-    }
-
-    public static int getIncId() {
-        return acc.get();
-    }
-
-    public static void setIncIdWith(int n) {
-        acc.set(n);
-    }
-
     public String getTitle() {
         return title;
     }
@@ -101,6 +88,18 @@ public class Todo {
         this.url = url;
     }
 
+    /**
+     * Collection version at the last write of this todo, assigned by the service on every insert
+     * and update. Each write to the collection takes a new version, todos written in one batch share it.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -125,14 +124,31 @@ public class Todo {
                 ", completed=" + completed +
                 ", order=" + order +
                 ", url='" + url + '\'' +
+                ", version=" + version +
                 '}';
     }
 
+    public JsonObject toPatch() {
+        JsonObject patch = new JsonObject();
+        if (title != null) {
+            patch.put("title", title);
+        }
+        if (completed != null) {
+            patch.put("completed", completed);
+        }
+        if (order != null) {
+            patch.put("order", order);
+        }
+        return patch;
+    }
+
     public Todo merge(Todo todo) {
-        return new Todo(id,
+        Todo merged = new Todo(id,
                 Optional.ofNullable(todo.title).orElse(title),
                 Optional.ofNullable(todo.completed).orElse(completed),
                 Optional.ofNullable(todo.order).orElse(order),
                 url);
+        merged.version = version;
+        return merged;
     }
 }
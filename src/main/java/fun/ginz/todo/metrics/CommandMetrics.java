@@ -0,0 +1,38 @@
+package fun.ginz.todo.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Round-trip latency and failures of one Redis command. {@link #DISABLED} drops everything, for
+ * services created without a registry.
+ */
+public class CommandMetrics {
+
+    public static final CommandMetrics DISABLED = new CommandMetrics(false);
+
+    private final boolean enabled;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicLong errors = new AtomicLong();
+
+    CommandMetrics(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public void record(long startNanos, boolean succeeded) {
+        if (!enabled) {
+            return;
+        }
+        latency.recordSince(startNanos);
+        if (!succeeded) {
+            errors.incrementAndGet();
+        }
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+}
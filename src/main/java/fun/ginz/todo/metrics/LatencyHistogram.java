@@ -0,0 +1,124 @@
+package fun.ginz.todo.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histogram with log-linear buckets in the spirit of HdrHistogram: every power of two
+ * of microseconds is split into 8 linear sub-buckets, so any recorded value is off by at most
+ * 12.5%. Recording is two atomic adds on preallocated arrays and never allocates, so it can sit
+ * on the request path. Values beyond about 19 hours land in the last bucket.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int MAX_MAGNITUDE = 36;
+    private static final int BUCKETS = SUB_COUNT + (MAX_MAGNITUDE - SUB_BITS + 1) * SUB_COUNT;
+
+    // Prometheus bucket bounds, every other power of two from 16us to about 17s
+    private static final int[] EXPORTED = {4, 6, 8, 10, 12, 14, 16, 18, 20, 22, 24};
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong sumNanos = new AtomicLong();
+
+    public void record(long nanos) {
+        counts.incrementAndGet(index(TimeUnit.NANOSECONDS.toMicros(nanos)));
+        sumNanos.addAndGet(nanos);
+    }
+
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    static int index(long micros) {
+        if (micros < SUB_COUNT) {
+            return micros < 0 ? 0 : (int) micros;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(micros);
+        if (magnitude > MAX_MAGNITUDE) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (micros >>> (magnitude - SUB_BITS)) - SUB_COUNT;
+        return SUB_COUNT + (magnitude - SUB_BITS) * SUB_COUNT + sub;
+    }
+
+    /** Exclusive upper bound of bucket {@code index} in microseconds. */
+    static long upperBound(int index) {
+        if (index < SUB_COUNT) {
+            return index + 1;
+        }
+        int magnitude = (index - SUB_COUNT) / SUB_COUNT + SUB_BITS;
+        int sub = (index - SUB_COUNT) % SUB_COUNT;
+        return (long) (SUB_COUNT + sub + 1) << (magnitude - SUB_BITS);
+    }
+
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+        return new Snapshot(copy, total, sumNanos.get());
+    }
+
+    public static class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long sumNanos;
+
+        private Snapshot(long[] counts, long count, long sumNanos) {
+            this.counts = counts;
+            this.count = count;
+            this.sumNanos = sumNanos;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getSumNanos() {
+            return sumNanos;
+        }
+
+        /** Upper bound in microseconds of the bucket holding the given quantile, 0 when empty. */
+        public long valueAt(double quantile) {
+            long rank = (long) Math.ceil(quantile * count);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank && seen > 0) {
+                    return upperBound(i);
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * Appends the {@code _bucket}, {@code _sum} and {@code _count} lines of a Prometheus
+         * histogram. {@code labels} is the inside of the label braces, e.g. {@code route="get_one"}.
+         */
+        void writePrometheus(StringBuilder out, String name, String labels) {
+            long cumulative = 0;
+            int next = 0;
+            for (int magnitude : EXPORTED) {
+                int end = index(1L << magnitude);
+                for (; next < end; next++) {
+                    cumulative += counts[next];
+                }
+                out.append(name).append("_bucket{").append(labels).append(",le=\"")
+                        .append(seconds((1L << magnitude) * 1000)).append("\"} ").append(cumulative).append('\n');
+            }
+            out.append(name).append("_bucket{").append(labels).append(",le=\"+Inf\"} ").append(count).append('\n');
+            out.append(name).append("_sum{").append(labels).append("} ").append(seconds(sumNanos)).append('\n');
+            out.append(name).append("_count{").append(labels).append("} ").append(count).append('\n');
+        }
+    }
+
+    static String seconds(long nanos) {
+        return Double.toString(nanos / 1e9);
+    }
+}
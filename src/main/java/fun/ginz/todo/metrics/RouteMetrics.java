@@ -0,0 +1,49 @@
+package fun.ginz.todo.metrics;
+
+import io.vertx.core.Handler;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.RoutingContext;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency, in-flight gauge and responses by status class of one route. A response closed
+ * before it was ended counts under {@code aborted}.
+ */
+public class RouteMetrics {
+
+    static final String[] CLASSES = {"aborted", "1xx", "2xx", "3xx", "4xx", "5xx"};
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicLong inFlight = new AtomicLong();
+    private final AtomicLongArray responses = new AtomicLongArray(CLASSES.length);
+
+    public Handler<RoutingContext> wrap(Handler<RoutingContext> handler) {
+        return context -> {
+            long start = System.nanoTime();
+            inFlight.incrementAndGet();
+            HttpServerResponse response = context.response();
+            // called exactly once, whether the response ended or the connection went away
+            response.endHandler(v -> {
+                latency.recordSince(start);
+                inFlight.decrementAndGet();
+                int status = response.getStatusCode() / 100;
+                responses.incrementAndGet(response.ended() && status > 0 && status < CLASSES.length ? status : 0);
+            });
+            handler.handle(context);
+        };
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public long getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getResponses(int statusClass) {
+        return responses.get(statusClass);
+    }
+}
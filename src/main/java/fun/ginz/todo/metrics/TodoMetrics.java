@@ -0,0 +1,130 @@
+package fun.ginz.todo.metrics;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+/**
+ * Registry shared by every verticle instance of a Vert.x instance. Routes and commands are looked
+ * up once when a verticle starts and kept in fields, so the request path only touches their
+ * counters. {@link #scrape()} renders everything in the Prometheus text format.
+ */
+public class TodoMetrics implements Shareable {
+
+    private static final String SHARED_MAP = "fun.ginz.todo";
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final Map<String, RouteMetrics> routes = new ConcurrentHashMap<>();
+    private final Map<String, CommandMetrics> commands = new ConcurrentHashMap<>();
+    private final Queue<Stats> stats = new ConcurrentLinkedQueue<>();
+
+    public static TodoMetrics shared(Vertx vertx) {
+        return (TodoMetrics) vertx.sharedData().<String, Shareable>getLocalMap(SHARED_MAP)
+                .computeIfAbsent("metrics", key -> new TodoMetrics());
+    }
+
+    public RouteMetrics route(String name) {
+        return routes.computeIfAbsent(name, key -> new RouteMetrics());
+    }
+
+    public CommandMetrics command(String name) {
+        return commands.computeIfAbsent(name, key -> new CommandMetrics(true));
+    }
+
+    /**
+     * Exposes the numeric fields of {@code source} as gauges named {@code prefix_field}. Sources
+     * registered under the same prefix, one per verticle instance, are summed.
+     */
+    public void register(String prefix, Supplier<JsonObject> source) {
+        stats.add(new Stats(prefix, source));
+    }
+
+    public String scrape() {
+        StringBuilder out = new StringBuilder(8192);
+        Map<String, RouteMetrics> routes = new TreeMap<>(this.routes);
+        Map<String, CommandMetrics> commands = new TreeMap<>(this.commands);
+
+        type(out, "todo_http_requests_in_flight", "gauge");
+        routes.forEach((name, route) -> sample(out, "todo_http_requests_in_flight", label("route", name), route.getInFlight()));
+
+        type(out, "todo_http_responses_total", "counter");
+        routes.forEach((name, route) -> {
+            for (int i = 0; i < RouteMetrics.CLASSES.length; i++) {
+                sample(out, "todo_http_responses_total",
+                        label("route", name) + "," + label("code", RouteMetrics.CLASSES[i]), route.getResponses(i));
+            }
+        });
+
+        type(out, "todo_http_request_duration_seconds", "histogram");
+        routes.forEach((name, route) -> route.getLatency().snapshot()
+                .writePrometheus(out, "todo_http_request_duration_seconds", label("route", name)));
+
+        type(out, "todo_http_request_duration_quantile_seconds", "gauge");
+        routes.forEach((name, route) -> quantiles(out, "todo_http_request_duration_quantile_seconds",
+                label("route", name), route.getLatency().snapshot()));
+
+        type(out, "todo_redis_command_duration_seconds", "histogram");
+        commands.forEach((name, command) -> command.getLatency().snapshot()
+                .writePrometheus(out, "todo_redis_command_duration_seconds", label("command", name)));
+
+        type(out, "todo_redis_command_duration_quantile_seconds", "gauge");
+        commands.forEach((name, command) -> quantiles(out, "todo_redis_command_duration_quantile_seconds",
+                label("command", name), command.getLatency().snapshot()));
+
+        type(out, "todo_redis_command_errors_total", "counter");
+        commands.forEach((name, command) -> sample(out, "todo_redis_command_errors_total",
+                label("command", name), command.getErrors()));
+
+        Map<String, Long> gauges = new TreeMap<>();
+        for (Stats source : stats) {
+            JsonObject values = source.supplier.get();
+            for (String field : values.fieldNames()) {
+                Object value = values.getValue(field);
+                if (value instanceof Number) {
+                    gauges.merge(source.prefix + "_" + field, ((Number) value).longValue(), Long::sum);
+                }
+            }
+        }
+        gauges.forEach((name, value) -> {
+            type(out, name, "gauge");
+            out.append(name).append(' ').append(value).append('\n');
+        });
+        return out.toString();
+    }
+
+    private static void quantiles(StringBuilder out, String name, String labels, LatencyHistogram.Snapshot snapshot) {
+        for (double quantile : QUANTILES) {
+            out.append(name).append('{').append(labels).append(',').append(label("quantile", String.valueOf(quantile)))
+                    .append("} ").append(LatencyHistogram.seconds(snapshot.valueAt(quantile) * 1000)).append('\n');
+        }
+    }
+
+    private static void type(StringBuilder out, String name, String type) {
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, long value) {
+        out.append(name).append('{').append(labels).append("} ").append(value).append('\n');
+    }
+
+    private static String label(String name, String value) {
+        return name + "=\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private static class Stats {
+        private final String prefix;
+        private final Supplier<JsonObject> supplier;
+
+        private Stats(String prefix, Supplier<JsonObject> supplier) {
+            this.prefix = prefix;
+            this.supplier = supplier;
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package fun.ginz.todo.service;
+
+import fun.ginz.todo.Contants;
+import fun.ginz.todo.entity.Todo;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.core.net.SocketAddress;
+import io.vertx.redis.RedisClient;
+import io.vertx.redis.RedisOptions;
+import io.vertx.redis.client.Command;
+import io.vertx.redis.client.Redis;
+import io.vertx.redis.client.Request;
+import io.vertx.redis.client.Response;
+import io.vertx.redis.client.ResponseType;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Near-cache decorator keeping the stored documents of this verticle instance in a bounded LRU map.
+ * Writes invalidate locally and publish the ids, comma separated, on {@link Contants#REDIS_INVALIDATE_CHANNEL}
+ * so that every other instance drops its copy too. While the subscription is down the cache
+ * is bypassed, since invalidations could be missed.
+ */
+public class CachingTodoService extends ForwardingTodoService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CachingTodoService.class);
+
+    private static final String INVALIDATE_ALL = "*";
+    private static final long RESUBSCRIBE_DELAY = 1000;
+
+    private final Vertx vertx;
+    private final RedisOptions config;
+    private final RedisClient publisher;
+    private final int maxSize;
+    private final long ttl;
+    private final Map<String, CacheEntry> entries;
+
+    private Redis subscriber;
+    private boolean subscribed;
+    private long epoch;
+    // failures since the last success, only the first of a run is logged
+    private int failedSubscribes;
+    private int failedPublishes;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public CachingTodoService(Vertx vertx, TodoService delegate, RedisOptions config, int maxSize, long ttl) {
+        super(delegate);
+        this.vertx = vertx;
+        this.config = config;
+        this.publisher = RedisClient.create(vertx, config);
+        this.maxSize = maxSize;
+        this.ttl = ttl;
+        this.entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                if (size() > CachingTodoService.this.maxSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+        subscribe();
+    }
+
+    private void subscribe() {
+        Redis.createClient(vertx, new io.vertx.redis.client.RedisOptions()
+                .setEndpoint(SocketAddress.inetSocketAddress(config.getPort(), config.getHost()))
+                .setPassword(config.getAuth())
+                .setSelect(config.getSelect())).connect(conn -> {
+            if (conn.failed()) {
+                subscribeFailed(conn.cause());
+                vertx.setTimer(RESUBSCRIBE_DELAY, id -> subscribe());
+                return;
+            }
+            subscriber = conn.result()
+                    .handler(this::handleMessage)
+                    .endHandler(v -> unsubscribed())
+                    .exceptionHandler(e -> unsubscribed());
+            subscriber.send(Request.cmd(Command.SUBSCRIBE).arg(Contants.REDIS_INVALIDATE_CHANNEL), res -> {
+                if (res.succeeded()) {
+                    // anything published while we were away may have been missed
+                    invalidateAll();
+                    subscribed = true;
+                    if (failedSubscribes > 0) {
+                        LOGGER.info("subscribed to invalidations after " + failedSubscribes + " failed attempts");
+                        failedSubscribes = 0;
+                    }
+                } else {
+                    subscribeFailed(res.cause());
+                    subscriber.close();
+                }
+            });
+        });
+    }
+
+    private void subscribeFailed(Throwable cause) {
+        if (failedSubscribes++ == 0) {
+            LOGGER.warn("subscribing to invalidations failed, the cache is bypassed until it succeeds", cause);
+        }
+    }
+
+    private void unsubscribed() {
+        if (subscriber == null) {
+            return;
+        }
+        subscriber = null;
+        subscribed = false;
+        invalidateAll();
+        vertx.setTimer(RESUBSCRIBE_DELAY, id -> subscribe());
+    }
+
+    private void handleMessage(Response message) {
+        // pushed messages look like ["message", channel, payload]
+        if (message.type() != ResponseType.MULTI || message.size() != 3
+                || !"message".equals(message.get(0).toString())) {
+            return;
+        }
+        invalidate(message.get(2).toString());
+    }
+
+    private void invalidate(String todoIDs) {
+        if (INVALIDATE_ALL.equals(todoIDs)) {
+            invalidateAll();
+            return;
+        }
+        epoch++;
+        for (String todoID : todoIDs.split(",")) {
+            entries.remove(todoID);
+        }
+    }
+
+    private void invalidateAll() {
+        epoch++;
+        entries.clear();
+    }
+
+    private <T> Future<T> publish(String todoIDs, Future<T> write) {
+        return write.compose(result -> {
+            invalidate(todoIDs);
+            Future<T> future = Future.future();
+            publisher.publish(Contants.REDIS_INVALIDATE_CHANNEL, todoIDs, res -> {
+                if (res.failed()) {
+                    if (failedPublishes++ == 0) {
+                        LOGGER.warn("publishing invalidations failed, other instances keep their copies", res.cause());
+                    }
+                } else if (failedPublishes > 0) {
+                    LOGGER.info("published invalidations again after " + failedPublishes + " failed attempts");
+                    failedPublishes = 0;
+                }
+                future.complete(result);
+            });
+            return future;
+        });
+    }
+
+    @Override
+    public Future<Todo> insert(Todo todo) {
+        return publish(String.valueOf(todo.getId()), delegate.insert(todo));
+    }
+
+    @Override
+    public Future<List<Todo>> insertAll(List<Todo> todos) {
+        return publish(joinIds(todos), delegate.insertAll(todos));
+    }
+
+    @Override
+    public Future<Optional<Todo>> getCertain(String todoID) {
+        return getCertainRaw(todoID).map(raw -> raw.map(Todo::new));
+    }
+
+    @Override
+    public Future<Optional<String>> getCertainRaw(String todoID) {
+        CacheEntry entry = entries.get(todoID);
+        if (entry != null) {
+            if (entry.expiresAt > System.currentTimeMillis()) {
+                hits++;
+                return Future.succeededFuture(Optional.of(entry.raw));
+            }
+            entries.remove(todoID);
+            evictions++;
+        }
+        misses++;
+
+        final long start = epoch;
+        return delegate.getCertainRaw(todoID).map(raw -> {
+            // only cache if nothing was invalidated while the read was in flight
+            if (raw.isPresent() && subscribed && start == epoch) {
+                entries.put(todoID, new CacheEntry(raw.get(), System.currentTimeMillis() + ttl));
+            }
+            return raw;
+        });
+    }
+
+    @Override
+    public Future<Todo> update(String todoID, Todo newTodo) {
+        return publish(todoID, delegate.update(todoID, newTodo));
+    }
+
+    @Override
+    public Future<List<Todo>> updateAll(List<Todo> patches) {
+        return publish(joinIds(patches), delegate.updateAll(patches));
+    }
+
+    @Override
+    public Future<Void> delete(String todoID) {
+        return publish(todoID, delegate.delete(todoID));
+    }
+
+    @Override
+    public Future<Void> deleteMany(List<String> todoIDs) {
+        return publish(String.join(",", todoIDs), delegate.deleteMany(todoIDs));
+    }
+
+    @Override
+    public Future<Void> deleteAll() {
+        return publish(INVALIDATE_ALL, delegate.deleteAll());
+    }
+
+    private static String joinIds(List<Todo> todos) {
+        return todos.stream().map(todo -> String.valueOf(todo.getId())).collect(Collectors.joining(","));
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public int getSize() {
+        return entries.size();
+    }
+
+    public JsonObject stats() {
+        return new JsonObject()
+                .put("hits", hits)
+                .put("misses", misses)
+                .put("evictions", evictions)
+                .put("size", entries.size());
+    }
+
+    private static final class CacheEntry {
+        private final String raw;
+        private final long expiresAt;
+
+        private CacheEntry(String raw, long expiresAt) {
+            this.raw = raw;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
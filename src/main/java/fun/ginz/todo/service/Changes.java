@@ -0,0 +1,59 @@
+package fun.ginz.todo.service;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What changed in the collection after a version: the todos written since, as raw documents, the
+ * ids deleted since, and the version to ask from next time. A version is handed out whole, so
+ * when a batch of changes is cut short to keep it under the limit, asking again from the returned
+ * version picks up exactly where it stopped.
+ * <p>
+ * Versions are opaque to clients: a number, or one per shard joined by dots. Asking from
+ * {@link #ORIGIN} returns every todo there is. A version older than the oldest delete still on
+ * record is {@link #isExpired() expired}, and the client has to start over from the origin.
+ */
+public class Changes {
+
+    public static final String ORIGIN = "0";
+
+    private static final Changes EXPIRED = new Changes(Collections.emptyList(), Collections.emptyList(), null, true);
+
+    private final List<String> items;
+    private final List<Integer> deleted;
+    private final String version;
+    private final boolean last;
+
+    public Changes(List<String> items, List<Integer> deleted, String version, boolean last) {
+        this.items = items;
+        this.deleted = deleted;
+        this.version = version;
+        this.last = last;
+    }
+
+    public static Changes expired() {
+        return EXPIRED;
+    }
+
+    public List<String> getItems() {
+        return items;
+    }
+
+    public List<Integer> getDeleted() {
+        return deleted;
+    }
+
+    /** The version the changes bring a client up to, null when expired. */
+    public String getVersion() {
+        return version;
+    }
+
+    /** False when more changes are waiting past {@link #getVersion()}. */
+    public boolean isLast() {
+        return last;
+    }
+
+    public boolean isExpired() {
+        return version == null;
+    }
+}
@@ -0,0 +1,204 @@
+package fun.ginz.todo.service;
+
+import fun.ginz.todo.entity.Todo;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Gathers the point reads issued within one event-loop tick (or {@code window} milliseconds) into
+ * a single {@link TodoService#getManyRaw(List)}. A read for an id that is already queued or in
+ * flight joins that lookup instead of issuing its own. Writes going through this service stop
+ * later reads from joining a lookup for the ids they touch, so a client always reads its own writes.
+ */
+public class CoalescingTodoService extends ForwardingTodoService {
+
+    private static final int BUCKETS = 11;
+
+    private final Vertx vertx;
+    private final long window;
+    private final int maxBatch;
+
+    private Map<String, List<Future<Optional<String>>>> queued = new LinkedHashMap<>();
+    private final Map<String, List<Future<Optional<String>>>> inFlight = new HashMap<>();
+    private long timer = -1;
+    private boolean scheduled;
+
+    private long lookups;
+    private long collapsed;
+    private long batches;
+    private final long[] batchSizes = new long[BUCKETS];
+
+    public CoalescingTodoService(Vertx vertx, TodoService delegate, long window, int maxBatch) {
+        super(delegate);
+        this.vertx = vertx;
+        this.window = window;
+        this.maxBatch = maxBatch;
+    }
+
+    @Override
+    public Future<Optional<Todo>> getCertain(String todoID) {
+        return getCertainRaw(todoID).map(raw -> raw.map(Todo::new));
+    }
+
+    @Override
+    public Future<Optional<String>> getCertainRaw(String todoID) {
+        Future<Optional<String>> future = Future.future();
+        lookups++;
+
+        List<Future<Optional<String>>> waiters = inFlight.get(todoID);
+        if (waiters == null) {
+            waiters = queued.get(todoID);
+        }
+        if (waiters != null) {
+            collapsed++;
+            waiters.add(future);
+            return future;
+        }
+
+        waiters = new ArrayList<>(1);
+        waiters.add(future);
+        queued.put(todoID, waiters);
+        if (queued.size() >= maxBatch) {
+            flush();
+        } else if (!scheduled) {
+            scheduled = true;
+            if (window > 0) {
+                timer = vertx.setTimer(window, id -> flush());
+            } else {
+                vertx.runOnContext(v -> flush());
+            }
+        }
+        return future;
+    }
+
+    private void flush() {
+        if (timer >= 0) {
+            vertx.cancelTimer(timer);
+            timer = -1;
+        }
+        scheduled = false;
+        if (queued.isEmpty()) {
+            return;
+        }
+
+        Map<String, List<Future<Optional<String>>>> batch = queued;
+        queued = new LinkedHashMap<>();
+        inFlight.putAll(batch);
+        record(batch.size());
+
+        List<String> todoIDs = new ArrayList<>(batch.keySet());
+        delegate.getManyRaw(todoIDs).setHandler(res -> {
+            for (int i = 0; i < todoIDs.size(); i++) {
+                String todoID = todoIDs.get(i);
+                List<Future<Optional<String>>> waiters = batch.get(todoID);
+                inFlight.remove(todoID, waiters);
+                for (Future<Optional<String>> waiter : waiters) {
+                    if (res.succeeded()) {
+                        waiter.complete(Optional.ofNullable(res.result().get(i)));
+                    } else {
+                        waiter.fail(res.cause());
+                    }
+                }
+            }
+        });
+    }
+
+    private void record(int size) {
+        batches++;
+        int bucket = 31 - Integer.numberOfLeadingZeros(size);
+        batchSizes[Math.min(bucket, BUCKETS - 1)]++;
+    }
+
+    private void detach(String todoID) {
+        inFlight.remove(todoID);
+    }
+
+    private void detach(List<Todo> todos) {
+        for (Todo todo : todos) {
+            inFlight.remove(String.valueOf(todo.getId()));
+        }
+    }
+
+    @Override
+    public Future<Todo> insert(Todo todo) {
+        detach(String.valueOf(todo.getId()));
+        return delegate.insert(todo);
+    }
+
+    @Override
+    public Future<List<Todo>> insertAll(List<Todo> todos) {
+        detach(todos);
+        return delegate.insertAll(todos);
+    }
+
+    @Override
+    public Future<Todo> update(String todoID, Todo newTodo) {
+        detach(todoID);
+        return delegate.update(todoID, newTodo);
+    }
+
+    @Override
+    public Future<List<Todo>> updateAll(List<Todo> patches) {
+        detach(patches);
+        return delegate.updateAll(patches);
+    }
+
+    @Override
+    public Future<Void> delete(String todoID) {
+        detach(todoID);
+        return delegate.delete(todoID);
+    }
+
+    @Override
+    public Future<Void> deleteMany(List<String> todoIDs) {
+        todoIDs.forEach(this::detach);
+        return delegate.deleteMany(todoIDs);
+    }
+
+    @Override
+    public Future<Void> deleteAll() {
+        inFlight.clear();
+        return delegate.deleteAll();
+    }
+
+    public long getLookups() {
+        return lookups;
+    }
+
+    public long getCollapsed() {
+        return collapsed;
+    }
+
+    public long getBatches() {
+        return batches;
+    }
+
+    /**
+     * Batch counts by size, bucket {@code i} holding batches of {@code 2^i} up to {@code 2^(i+1) - 1}
+     * lookups and the last bucket everything larger.
+     */
+    public long[] getBatchSizes() {
+        return batchSizes.clone();
+    }
+
+    public JsonObject stats() {
+        JsonArray sizes = new JsonArray();
+        for (long count : batchSizes) {
+            sizes.add(count);
+        }
+        return new JsonObject()
+                .put("lookups", lookups)
+                .put("collapsed", collapsed)
+                .put("batches", batches)
+                .put("batchSizes", sizes);
+    }
+}
@@ -0,0 +1,106 @@
+package fun.ginz.todo.service;
+
+import fun.ginz.todo.entity.Todo;
+import io.vertx.core.Future;
+
+import java.util.List;
+import java.util.Optional;
+
+public abstract class ForwardingTodoService implements TodoService {
+
+    protected final TodoService delegate;
+
+    protected ForwardingTodoService(TodoService delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Future<Boolean> initData() {
+        return delegate.initData();
+    }
+
+    @Override
+    public Future<Todo> insert(Todo todo) {
+        return delegate.insert(todo);
+    }
+
+    @Override
+    public Future<List<Todo>> insertAll(List<Todo> todos) {
+        return delegate.insertAll(todos);
+    }
+
+    @Override
+    public Future<List<Todo>> getAll() {
+        return delegate.getAll();
+    }
+
+    @Override
+    public Future<Page<Todo>> scan(String cursor, int count) {
+        return delegate.scan(cursor, count);
+    }
+
+    @Override
+    public Future<Page<String>> scanRaw(String cursor, int count) {
+        return delegate.scanRaw(cursor, count);
+    }
+
+    @Override
+    public Future<Page<Todo>> query(TodoQuery query) {
+        return delegate.query(query);
+    }
+
+    @Override
+    public Future<Page<String>> queryRaw(TodoQuery query) {
+        return delegate.queryRaw(query);
+    }
+
+    @Override
+    public Future<Optional<Todo>> getCertain(String todoID) {
+        return delegate.getCertain(todoID);
+    }
+
+    @Override
+    public Future<Optional<String>> getCertainRaw(String todoID) {
+        return delegate.getCertainRaw(todoID);
+    }
+
+    @Override
+    public Future<List<String>> getManyRaw(List<String> todoIDs) {
+        return delegate.getManyRaw(todoIDs);
+    }
+
+    @Override
+    public Future<Todo> update(String todoID, Todo newTodo) {
+        return delegate.update(todoID, newTodo);
+    }
+
+    @Override
+    public Future<List<Todo>> updateAll(List<Todo> patches) {
+        return delegate.updateAll(patches);
+    }
+
+    @Override
+    public Future<Void> delete(String todoID) {
+        return delegate.delete(todoID);
+    }
+
+    @Override
+    public Future<Void> deleteMany(List<String> todoIDs) {
+        return delegate.deleteMany(todoIDs);
+    }
+
+    @Override
+    public Future<Void> deleteAll() {
+        return delegate.deleteAll();
+    }
+
+    @Override
+    public Future<Changes> changes(String since, int limit) {
+        return delegate.changes(since, limit);
+    }
+
+    @Override
+    public Future<Long> version() {
+        return delegate.version();
+    }
+}
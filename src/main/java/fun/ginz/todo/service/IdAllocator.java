@@ -0,0 +1,16 @@
+package fun.ginz.todo.service;
+
+import io.vertx.core.Future;
+
+public interface IdAllocator {
+
+    Future<Integer> next();
+
+    /**
+     * Reserves an id a client picked, so that {@link #next()} never hands it out, here or in any
+     * other instance. Fails with {@link IdTakenException} when the id may have been handed out
+     * already.
+     */
+    Future<Void> observe(int id);
+
+}
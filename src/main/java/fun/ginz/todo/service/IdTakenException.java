@@ -0,0 +1,12 @@
+package fun.ginz.todo.service;
+
+/**
+ * A client asked for an id that an {@link IdAllocator} may already have handed out, so storing
+ * the todo under it could overwrite another one.
+ */
+public class IdTakenException extends RuntimeException {
+
+    public IdTakenException(int id) {
+        super("id " + id + " is taken");
+    }
+}
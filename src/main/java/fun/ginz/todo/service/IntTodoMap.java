@@ -0,0 +1,166 @@
+package fun.ginz.todo.service;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash table from todo id to stored document, with the keys kept in a plain
+ * {@code int[]} so lookups never box. Uses linear probing with backward-shift deletion, so no
+ * tombstones pile up. Key {@code 0} marks a free slot and cannot be stored. Not thread-safe.
+ */
+class IntTodoMap {
+
+    private static final int FREE = 0;
+    private static final int MIN_CAPACITY = 16;
+
+    private int[] keys;
+    private String[] values;
+    private int size;
+    private int mask;
+
+    IntTodoMap() {
+        this(MIN_CAPACITY);
+    }
+
+    IntTodoMap(int expected) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expected * 2) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new String[capacity];
+        mask = capacity - 1;
+    }
+
+    private int slot(int key) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    String get(int key) {
+        for (int i = slot(key); ; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+            if (keys[i] == FREE) {
+                return null;
+            }
+        }
+    }
+
+    String put(int key, String value) {
+        if (key == FREE) {
+            throw new IllegalArgumentException("id 0 cannot be stored");
+        }
+        for (int i = slot(key); ; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                String old = values[i];
+                values[i] = value;
+                return old;
+            }
+            if (keys[i] == FREE) {
+                keys[i] = key;
+                values[i] = value;
+                if (++size * 2 > keys.length) {
+                    rehash(keys.length << 1);
+                }
+                return null;
+            }
+        }
+    }
+
+    String remove(int key) {
+        if (key == FREE) {
+            // would stop on the first free slot and take it for the entry
+            return null;
+        }
+        int i = slot(key);
+        while (keys[i] != key) {
+            if (keys[i] == FREE) {
+                return null;
+            }
+            i = (i + 1) & mask;
+        }
+        String old = values[i];
+
+        // shift the following entries of the probe run back so that lookups never hit a hole
+        for (int j = (i + 1) & mask; keys[j] != FREE; j = (j + 1) & mask) {
+            int home = slot(keys[j]);
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                keys[i] = keys[j];
+                values[i] = values[j];
+                i = j;
+            }
+        }
+        keys[i] = FREE;
+        values[i] = null;
+        size--;
+        return old;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        String[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                for (int j = slot(oldKeys[i]); ; j = (j + 1) & mask) {
+                    if (keys[j] == FREE) {
+                        keys[j] = oldKeys[i];
+                        values[j] = oldValues[i];
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        Arrays.fill(keys, FREE);
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    void forEach(EntryConsumer consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE) {
+                consumer.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    /**
+     * Walks the table from slot {@code cursor}, handing out up to {@code count} entries, and
+     * returns the slot to continue from, or {@code 0} once the end is reached. Like HSCAN, entries
+     * may be missed or repeated if the table is resized between calls.
+     */
+    int scan(int cursor, int count, EntryConsumer consumer) {
+        int i = Math.max(cursor, 0);
+        for (int found = 0; i < keys.length && found < count; i++) {
+            if (keys[i] != FREE) {
+                consumer.accept(keys[i], values[i]);
+                found++;
+            }
+        }
+        return i >= keys.length ? 0 : i;
+    }
+
+    int maxKey() {
+        int max = 0;
+        for (int key : keys) {
+            max = Math.max(max, key);
+        }
+        return max;
+    }
+
+    interface EntryConsumer {
+        void accept(int key, String value);
+    }
+}
@@ -0,0 +1,91 @@
+package fun.ginz.todo.service;
+
+import io.vertx.core.Future;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hands out ids from blocks leased off a counter row of a {@link JdbcTodoStore}, so only one
+ * allocation in {@code blockSize} costs a transaction and ids stay unique across instances and
+ * restarts. An id a client picks is only free above the counter, or in this instance's block ahead
+ * of the ids it handed out. Meant to be used from a single context.
+ */
+public class JdbcIdAllocator implements IdAllocator {
+
+    private final JdbcTodoStore store;
+    private final int blockSize;
+
+    private int next = 1;
+    private int last;
+    /** Callers waiting for the block being leased, null while there is no lease out. */
+    private List<Future<Void>> waiters;
+
+    public JdbcIdAllocator(JdbcTodoStore store, int blockSize) {
+        this.store = store;
+        this.blockSize = blockSize;
+    }
+
+    @Override
+    public Future<Integer> next() {
+        if (next <= last) {
+            return Future.succeededFuture(next++);
+        }
+        return lease().compose(v -> next());
+    }
+
+    /** Leases a block now, if none is left, so that the next create does not wait for one. */
+    public Future<Void> prefetch() {
+        return next <= last ? Future.succeededFuture() : lease();
+    }
+
+    private Future<Void> lease() {
+        Future<Void> future = Future.future();
+        if (waiters != null) {
+            waiters.add(future);
+            return future;
+        }
+        waiters = new ArrayList<>();
+        waiters.add(future);
+        store.transaction(connection -> JdbcTodoStore.advance(connection, JdbcTodoStore.LAST_ID, blockSize))
+                .setHandler(res -> {
+                    List<Future<Void>> ready = waiters;
+                    waiters = null;
+                    if (res.succeeded()) {
+                        last = res.result().intValue();
+                        next = last - blockSize + 1;
+                    }
+                    for (Future<Void> waiter : ready) {
+                        if (res.succeeded()) {
+                            waiter.complete();
+                        } else {
+                            waiter.fail(res.cause());
+                        }
+                    }
+                });
+        return future;
+    }
+
+    @Override
+    public Future<Void> observe(int id) {
+        // ids of this block that are still to come are reserved by moving past them
+        if (next <= id && id <= last) {
+            next = id + 1;
+            return Future.succeededFuture();
+        }
+        // anything up to the counter is handed out already or leased to some instance
+        return store.transaction(connection -> {
+            try (PreparedStatement update = connection.prepareStatement(
+                    "UPDATE todo_counter SET val = ? WHERE name = ? AND val < ?")) {
+                update.setLong(1, id);
+                update.setString(2, JdbcTodoStore.LAST_ID);
+                update.setLong(3, id);
+                if (update.executeUpdate() == 0) {
+                    throw new IdTakenException(id);
+                }
+            }
+            return null;
+        });
+    }
+}
@@ -0,0 +1,531 @@
+package fun.ginz.todo.service;
+
+import fun.ginz.todo.codec.TodoJson;
+import fun.ginz.todo.entity.Todo;
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonObject;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Todos as rows of a table in a {@link JdbcTodoStore}. Every write is one transaction that also
+ * takes the next collection version, so rows and version never disagree, and the rows of bulk
+ * writes go out as batched prepared statements. Listings page by keyset over the {@code (ord, id)}
+ * indexes, and the raw methods encode the documents on the JDBC thread. Deletes leave a tombstone
+ * row at their version for {@link #changes(String, int)}, the oldest dropped past
+ * {@code tombstones} of them.
+ */
+public class JdbcTodoService implements TodoService {
+
+    private static final String COLUMNS = "id, title, completed, ord, url, version";
+    private static final int TOMBSTONES = 10000;
+    /** Todos and tombstones in one listing, told apart by the last column. */
+    private static final String CHANGES = "SELECT " + COLUMNS + ", FALSE FROM todo WHERE version > ? AND version <= ?"
+            + " UNION ALL SELECT id, NULL, FALSE, 0, NULL, version, TRUE FROM todo_tombstone WHERE version > ? AND version <= ?"
+            + " ORDER BY 6, 1";
+
+    private final JdbcTodoStore store;
+    private final boolean prettyJson;
+    private final int tombstones;
+
+    public JdbcTodoService(JdbcTodoStore store, boolean prettyJson) {
+        this(store, prettyJson, TOMBSTONES);
+    }
+
+    public JdbcTodoService(JdbcTodoStore store, boolean prettyJson, int tombstones) {
+        this.store = store;
+        this.prettyJson = prettyJson;
+        this.tombstones = tombstones;
+    }
+
+    private String encode(Todo todo) {
+        return TodoJson.encode(todo, prettyJson).toString();
+    }
+
+    private static int parseId(String todoID) {
+        try {
+            return Integer.parseInt(todoID);
+        } catch (NumberFormatException e) {
+            // never stored, so looking it up finds nothing
+            return 0;
+        }
+    }
+
+    private static Todo read(ResultSet rs) throws SQLException {
+        Todo todo = new Todo(rs.getInt(1), rs.getString(2), rs.getBoolean(3), rs.getInt(4), rs.getString(5));
+        todo.setVersion(rs.getLong(6));
+        return todo;
+    }
+
+    @Override
+    public Future<Boolean> initData() {
+        return store.transaction(connection -> {
+            int id = (int) JdbcTodoStore.advance(connection, JdbcTodoStore.LAST_ID, 1);
+            write(connection, Collections.singletonList(new Todo(id, "Something to do...", false, 1, "todo/ex")));
+            return true;
+        });
+    }
+
+    @Override
+    public Future<Todo> insert(Todo todo) {
+        return insertAll(Collections.singletonList(todo)).map(todo);
+    }
+
+    @Override
+    public Future<List<Todo>> insertAll(List<Todo> todos) {
+        if (todos.isEmpty()) {
+            return Future.succeededFuture(todos);
+        }
+        return store.transaction(connection -> {
+            write(connection, todos);
+            return todos;
+        });
+    }
+
+    private static void write(Connection connection, List<Todo> todos) throws SQLException {
+        long version = JdbcTodoStore.advance(connection, JdbcTodoStore.VERSION, 1);
+        // an insert replaces the todo with the same id, as it does on the other backends, and so does
+        // a later todo of the same batch: the batches run every delete before the first insert
+        Map<Integer, Todo> written = new LinkedHashMap<>();
+        for (Todo todo : todos) {
+            written.put(todo.getId(), todo);
+        }
+        try (PreparedStatement delete = connection.prepareStatement("DELETE FROM todo WHERE id = ?");
+             PreparedStatement revive = connection.prepareStatement("DELETE FROM todo_tombstone WHERE id = ?");
+             PreparedStatement insert = connection.prepareStatement(
+                     "INSERT INTO todo (" + COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?)")) {
+            for (Todo todo : written.values()) {
+                delete.setInt(1, todo.getId());
+                delete.addBatch();
+                revive.setInt(1, todo.getId());
+                revive.addBatch();
+                insert.setInt(1, todo.getId());
+                insert.setString(2, todo.getTitle());
+                insert.setBoolean(3, todo.getCompleted());
+                insert.setInt(4, todo.getOrder());
+                insert.setString(5, todo.getUrl());
+                insert.setLong(6, version);
+                insert.addBatch();
+            }
+            delete.executeBatch();
+            revive.executeBatch();
+            insert.executeBatch();
+        }
+        for (Todo todo : todos) {
+            todo.setVersion(version);
+        }
+    }
+
+    @Override
+    public Future<List<Todo>> getAll() {
+        return store.transaction(connection -> {
+            try (PreparedStatement select = connection.prepareStatement(
+                    "SELECT " + COLUMNS + " FROM todo ORDER BY id");
+                 ResultSet rs = select.executeQuery()) {
+                List<Todo> todos = new ArrayList<>();
+                while (rs.next()) {
+                    todos.add(read(rs));
+                }
+                return todos;
+            }
+        });
+    }
+
+    @Override
+    public Future<Page<Todo>> scan(String cursor, int count) {
+        return scan(cursor, count, Function.identity());
+    }
+
+    @Override
+    public Future<Page<String>> scanRaw(String cursor, int count) {
+        return scan(cursor, count, this::encode);
+    }
+
+    private <T> Future<Page<T>> scan(String cursor, int count, Function<Todo, T> item) {
+        // the cursor is the last id handed out, ids start at 1 so "0" stays free for the first page
+        final int after;
+        try {
+            after = Integer.parseInt(cursor);
+        } catch (NumberFormatException e) {
+            return Future.failedFuture(e);
+        }
+        return store.transaction(connection -> {
+            try (PreparedStatement select = connection.prepareStatement(
+                    "SELECT " + COLUMNS + " FROM todo WHERE id > ? ORDER BY id")) {
+                select.setInt(1, after);
+                select.setMaxRows(count + 1);
+                List<T> items = new ArrayList<>(count);
+                int last = 0;
+                try (ResultSet rs = select.executeQuery()) {
+                    while (items.size() < count && rs.next()) {
+                        Todo todo = read(rs);
+                        last = todo.getId();
+                        items.add(item.apply(todo));
+                    }
+                    return new Page<>(items, rs.next() ? String.valueOf(last) : Page.FIRST);
+                }
+            }
+        });
+    }
+
+    @Override
+    public Future<Page<Todo>> query(TodoQuery query) {
+        return query(query, Function.identity());
+    }
+
+    @Override
+    public Future<Page<String>> queryRaw(TodoQuery query) {
+        return query(query, this::encode);
+    }
+
+    private <T> Future<Page<T>> query(TodoQuery query, Function<Todo, T> item) {
+        // the cursor is the order and id of the last todo handed out, as "order.id"
+        final boolean first = Page.FIRST.equals(query.getCursor());
+        final int afterOrder;
+        final int afterId;
+        if (first) {
+            afterOrder = 0;
+            afterId = 0;
+        } else {
+            int dot = query.getCursor().lastIndexOf('.');
+            try {
+                afterOrder = Integer.parseInt(query.getCursor().substring(0, Math.max(dot, 0)));
+                afterId = Integer.parseInt(query.getCursor().substring(dot + 1));
+            } catch (NumberFormatException e) {
+                return Future.failedFuture(e);
+            }
+        }
+
+        List<String> conditions = new ArrayList<>(2);
+        if (query.getCompleted() != null) {
+            conditions.add("completed = ?");
+        }
+        if (!first) {
+            conditions.add(query.isDescending() ? "(ord < ? OR ord = ? AND id < ?)" : "(ord > ? OR ord = ? AND id > ?)");
+        }
+        String sql = "SELECT " + COLUMNS + " FROM todo"
+                + (conditions.isEmpty() ? "" : " WHERE " + String.join(" AND ", conditions))
+                + (query.isDescending() ? " ORDER BY ord DESC, id DESC" : " ORDER BY ord, id");
+
+        return store.transaction(connection -> {
+            try (PreparedStatement select = connection.prepareStatement(sql)) {
+                int param = 1;
+                if (query.getCompleted() != null) {
+                    select.setBoolean(param++, query.getCompleted());
+                }
+                if (!first) {
+                    select.setInt(param++, afterOrder);
+                    select.setInt(param++, afterOrder);
+                    select.setInt(param, afterId);
+                }
+                select.setMaxRows(query.getLimit() + 1);
+                List<T> items = new ArrayList<>(query.getLimit());
+                Todo last = null;
+                try (ResultSet rs = select.executeQuery()) {
+                    while (items.size() < query.getLimit() && rs.next()) {
+                        last = read(rs);
+                        items.add(item.apply(last));
+                    }
+                    return new Page<>(items, last != null && rs.next()
+                            ? last.getOrder() + "." + last.getId() : Page.FIRST);
+                }
+            }
+        });
+    }
+
+    @Override
+    public Future<Optional<Todo>> getCertain(String todoID) {
+        return getCertain(todoID, Function.identity());
+    }
+
+    @Override
+    public Future<Optional<String>> getCertainRaw(String todoID) {
+        return getCertain(todoID, this::encode);
+    }
+
+    private <T> Future<Optional<T>> getCertain(String todoID, Function<Todo, T> item) {
+        final int id = parseId(todoID);
+        if (id == 0) {
+            return Future.succeededFuture(Optional.empty());
+        }
+        return store.transaction(connection -> Optional.ofNullable(select(connection, Collections.singletonList(id))
+                .get(id)).map(item));
+    }
+
+    @Override
+    public Future<List<String>> getManyRaw(List<String> todoIDs) {
+        if (todoIDs.isEmpty()) {
+            return Future.succeededFuture(Collections.emptyList());
+        }
+        final List<Integer> ids = new ArrayList<>(todoIDs.size());
+        for (String todoID : todoIDs) {
+            ids.add(parseId(todoID));
+        }
+        return store.transaction(connection -> {
+            Map<Integer, Todo> found = select(connection, ids);
+            List<String> docs = new ArrayList<>(ids.size());
+            for (int id : ids) {
+                Todo todo = found.get(id);
+                docs.add(todo == null ? null : encode(todo));
+            }
+            return docs;
+        });
+    }
+
+    private static Map<Integer, Todo> select(Connection connection, List<Integer> ids) throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT " + COLUMNS + " FROM todo WHERE id IN (");
+        for (int i = 0; i < ids.size(); i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        try (PreparedStatement select = connection.prepareStatement(sql.append(')').toString())) {
+            for (int i = 0; i < ids.size(); i++) {
+                select.setInt(i + 1, ids.get(i));
+            }
+            Map<Integer, Todo> found = new HashMap<>();
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    Todo todo = read(rs);
+                    found.put(todo.getId(), todo);
+                }
+            }
+            return found;
+        }
+    }
+
+    @Override
+    public Future<Todo> update(String todoID, Todo newTodo) {
+        Todo patch = new Todo(newTodo);
+        patch.setId(parseId(todoID));
+        return updateAll(Collections.singletonList(patch)).map(merged -> merged.get(0));
+    }
+
+    @Override
+    public Future<List<Todo>> updateAll(List<Todo> patches) {
+        if (patches.isEmpty()) {
+            return Future.succeededFuture(patches);
+        }
+        return store.transaction(connection -> {
+            long version = JdbcTodoStore.advance(connection, JdbcTodoStore.VERSION, 1);
+            int updated = 0;
+            // same field-by-field merge as the other backends: only the fields a patch has change
+            try (PreparedStatement update = connection.prepareStatement("UPDATE todo SET"
+                    + " title = COALESCE(?, title), completed = COALESCE(?, completed), ord = COALESCE(?, ord),"
+                    + " version = ? WHERE id = ?")) {
+                for (Todo patch : patches) {
+                    JsonObject fields = patch.toPatch();
+                    update.setObject(1, fields.getString("title"), Types.VARCHAR);
+                    update.setObject(2, fields.getBoolean("completed"), Types.BOOLEAN);
+                    update.setObject(3, fields.getInteger("order"), Types.INTEGER);
+                    update.setLong(4, version);
+                    update.setInt(5, patch.getId());
+                    update.addBatch();
+                }
+                for (int count : update.executeBatch()) {
+                    updated += count == Statement.SUCCESS_NO_INFO ? 1 : count;
+                }
+            }
+            if (updated == 0) {
+                // nothing changed, so the version does not either
+                connection.rollback();
+            }
+
+            List<Integer> ids = new ArrayList<>(patches.size());
+            for (Todo patch : patches) {
+                ids.add(patch.getId());
+            }
+            Map<Integer, Todo> found = select(connection, ids);
+            List<Todo> merged = new ArrayList<>(ids.size());
+            for (int id : ids) {
+                merged.add(found.get(id));
+            }
+            return merged;
+        });
+    }
+
+    @Override
+    public Future<Void> delete(String todoID) {
+        return deleteMany(Collections.singletonList(todoID));
+    }
+
+    @Override
+    public Future<Void> deleteMany(List<String> todoIDs) {
+        if (todoIDs.isEmpty()) {
+            return Future.succeededFuture();
+        }
+        return store.transaction(connection -> {
+            // the version first, as every write takes it, so that writes lock in the same order
+            long version = JdbcTodoStore.advance(connection, JdbcTodoStore.VERSION, 1);
+            List<Integer> deleted = new ArrayList<>(todoIDs.size());
+            try (PreparedStatement delete = connection.prepareStatement("DELETE FROM todo WHERE id = ?")) {
+                List<Integer> ids = new ArrayList<>(todoIDs.size());
+                for (String todoID : todoIDs) {
+                    ids.add(parseId(todoID));
+                    delete.setInt(1, ids.get(ids.size() - 1));
+                    delete.addBatch();
+                }
+                int[] counts = delete.executeBatch();
+                for (int i = 0; i < counts.length; i++) {
+                    if (counts[i] > 0 || counts[i] == Statement.SUCCESS_NO_INFO) {
+                        deleted.add(ids.get(i));
+                    }
+                }
+            }
+            if (deleted.isEmpty()) {
+                // nothing changed, so the version does not either
+                connection.rollback();
+            } else {
+                bury(connection, deleted, version);
+            }
+            return null;
+        });
+    }
+
+    /** Records the tombstones of {@code ids}, dropping the oldest ones past the limit. */
+    private void bury(Connection connection, List<Integer> ids, long version) throws SQLException {
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO todo_tombstone (id, version) VALUES (?, ?)")) {
+            for (int id : new LinkedHashSet<>(ids)) {
+                insert.setInt(1, id);
+                insert.setLong(2, version);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+
+        long excess;
+        try (Statement count = connection.createStatement();
+             ResultSet rs = count.executeQuery("SELECT COUNT(*) FROM todo_tombstone")) {
+            rs.next();
+            excess = rs.getLong(1) - tombstones;
+        }
+        if (excess <= 0) {
+            return;
+        }
+        long lastVersion = 0;
+        int lastId = 0;
+        try (PreparedStatement oldest = connection.prepareStatement("SELECT version, id FROM todo_tombstone ORDER BY version, id")) {
+            oldest.setMaxRows((int) excess);
+            try (ResultSet rs = oldest.executeQuery()) {
+                while (rs.next()) {
+                    lastVersion = rs.getLong(1);
+                    lastId = rs.getInt(2);
+                }
+            }
+        }
+        try (PreparedStatement trim = connection.prepareStatement(
+                "DELETE FROM todo_tombstone WHERE version < ? OR version = ? AND id <= ?")) {
+            trim.setLong(1, lastVersion);
+            trim.setLong(2, lastVersion);
+            trim.setInt(3, lastId);
+            trim.executeUpdate();
+        }
+        JdbcTodoStore.raise(connection, JdbcTodoStore.HORIZON, lastVersion);
+    }
+
+    @Override
+    public Future<Void> deleteAll() {
+        return store.transaction(connection -> {
+            long version = JdbcTodoStore.advance(connection, JdbcTodoStore.VERSION, 1);
+            try (Statement delete = connection.createStatement()) {
+                delete.executeUpdate("DELETE FROM todo");
+                delete.executeUpdate("DELETE FROM todo_tombstone");
+            }
+            JdbcTodoStore.raise(connection, JdbcTodoStore.HORIZON, version);
+            return null;
+        });
+    }
+
+    @Override
+    public Future<Changes> changes(String since, int limit) {
+        final long from;
+        try {
+            from = Long.parseLong(since);
+        } catch (NumberFormatException e) {
+            return Future.failedFuture(e);
+        }
+        final boolean origin = Changes.ORIGIN.equals(since);
+        return store.transaction(connection -> {
+            // every write takes the version first and holds it to the commit, so all rows up to
+            // the one read here are committed, and later ones are left for the next call
+            long version = JdbcTodoStore.counter(connection, JdbcTodoStore.VERSION);
+            if (!origin && (from < JdbcTodoStore.counter(connection, JdbcTodoStore.HORIZON) || from > version)) {
+                return Changes.expired();
+            }
+            List<Change> rows = changes(connection, origin ? Long.MIN_VALUE : from, version, limit + 1);
+            boolean last = rows.size() <= limit;
+            long upto = version;
+            if (!last) {
+                long cut = rows.get(limit).version;
+                int keep = limit;
+                while (keep > 0 && rows.get(keep - 1).version == cut) {
+                    keep--;
+                }
+                // one version alone is over the limit, and it is only handed out whole
+                rows = keep > 0 ? rows.subList(0, keep) : changes(connection, cut - 1, cut, 0);
+                upto = rows.get(rows.size() - 1).version;
+                // nothing can follow the collection version
+                last = upto == version;
+            }
+
+            List<String> items = new ArrayList<>(rows.size());
+            List<Integer> deleted = new ArrayList<>();
+            for (Change row : rows) {
+                if (row.todo == null) {
+                    deleted.add(row.id);
+                } else {
+                    items.add(encode(row.todo));
+                }
+            }
+            return new Changes(items, deleted, String.valueOf(upto), last);
+        });
+    }
+
+    /** Todos and tombstones changed in {@code (after, upto]}, by version. */
+    private static List<Change> changes(Connection connection, long after, long upto, int maxRows) throws SQLException {
+        try (PreparedStatement select = connection.prepareStatement(CHANGES)) {
+            select.setLong(1, after);
+            select.setLong(2, upto);
+            select.setLong(3, after);
+            select.setLong(4, upto);
+            select.setMaxRows(maxRows);
+            List<Change> rows = new ArrayList<>();
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(new Change(rs.getInt(1), rs.getLong(6), rs.getBoolean(7) ? null : read(rs)));
+                }
+            }
+            return rows;
+        }
+    }
+
+    private static final class Change {
+        private final int id;
+        private final long version;
+        /** Null for a tombstone. */
+        private final Todo todo;
+
+        private Change(int id, long version, Todo todo) {
+            this.id = id;
+            this.version = version;
+            this.todo = todo;
+        }
+    }
+
+    @Override
+    public Future<Long> version() {
+        return store.transaction(connection -> JdbcTodoStore.counter(connection, JdbcTodoStore.VERSION));
+    }
+}
@@ -0,0 +1,284 @@
+package fun.ginz.todo.service;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import fun.ginz.todo.metrics.TodoMetrics;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A database behind JDBC, shared by every verticle instance of a Vert.x instance. JDBC blocks, so
+ * each task runs on one of {@code threads} threads with at most {@code maxQueued} more waiting, or,
+ * with {@code virtualThreads} on a JDK that has them, on a virtual thread of its own with no more
+ * than as many in flight. Past that, tasks fail with a {@link RejectedExecutionException}. A task
+ * is one transaction on a connection from a HikariCP pool, and its result comes back on the
+ * caller's context, so the event loop never waits for the database.
+ * <p>
+ * The pool connects and creates the schema on the first task, not on the thread deploying the
+ * verticle, and tries again on the next one if that failed.
+ */
+public class JdbcTodoStore implements Shareable {
+
+    static final String VERSION = "version";
+    static final String LAST_ID = "last_id";
+    /** The oldest version changes can be synced from, raised as tombstones are dropped. */
+    static final String HORIZON = "horizon";
+
+    private static final String SHARED_MAP = "fun.ginz.todo";
+    private static final List<String> SCHEMA = loadSchema();
+
+    private final Vertx vertx;
+    private final HikariConfig config;
+    private final ExecutorService executor;
+    /** Bounds the virtual threads, the thread pool bounds its own queue. */
+    private final Semaphore permits;
+    private final int capacity;
+    private final AtomicLong rejected = new AtomicLong();
+
+    private volatile HikariDataSource dataSource;
+
+    private JdbcTodoStore(Vertx vertx, HikariConfig config, int threads, int maxQueued, boolean virtualThreads) {
+        this.vertx = vertx;
+        this.config = config;
+        config.setAutoCommit(false);
+        if (config.getPoolName() == null) {
+            config.setPoolName("todo-jdbc");
+        }
+
+        ExecutorService virtual = virtualThreads ? newVirtualThreadExecutor() : null;
+        this.capacity = threads + maxQueued;
+        if (virtual != null) {
+            this.executor = virtual;
+            this.permits = new Semaphore(capacity);
+        } else {
+            AtomicInteger count = new AtomicInteger();
+            this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(maxQueued), runnable -> {
+                Thread thread = new Thread(runnable, "todo-jdbc-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.permits = null;
+        }
+    }
+
+    public static JdbcTodoStore shared(Vertx vertx, HikariConfig config, int threads, int maxQueued,
+                                       boolean virtualThreads, TodoMetrics metrics) {
+        return (JdbcTodoStore) vertx.sharedData().<String, Shareable>getLocalMap(SHARED_MAP).computeIfAbsent(
+                "jdbc.store:" + config.getJdbcUrl(), key -> {
+                    JdbcTodoStore store = new JdbcTodoStore(vertx, config, threads, maxQueued, virtualThreads);
+                    // registered once here, the instances sharing the store would add it up otherwise
+                    if (metrics != null) {
+                        metrics.register("todo_jdbc", store::stats);
+                    }
+                    return store;
+                });
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            // before JDK 21, so the thread pool it is
+            return null;
+        }
+    }
+
+    private static List<String> loadSchema() {
+        try (InputStream in = JdbcTodoStore.class.getResourceAsStream("/sql/schema.sql")) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for (int n; (n = in.read(buffer)) > 0; ) {
+                out.write(buffer, 0, n);
+            }
+            List<String> statements = new ArrayList<>();
+            for (String statement : new String(out.toByteArray(), StandardCharsets.UTF_8).split(";")) {
+                if (!statement.trim().isEmpty()) {
+                    statements.add(statement.trim());
+                }
+            }
+            return statements;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Completes once the database is connected and has the schema, or fails with the reason it is not. */
+    public Future<Void> warmUp() {
+        return transaction(connection -> null);
+    }
+
+    <T> Future<T> transaction(Task<T> task) {
+        Context context = vertx.getOrCreateContext();
+        Future<T> future = Future.future();
+        if (permits != null && !permits.tryAcquire()) {
+            return rejected();
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    run(context, future, task);
+                } finally {
+                    if (permits != null) {
+                        permits.release();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            if (permits != null) {
+                permits.release();
+            }
+            return rejected();
+        }
+        return future;
+    }
+
+    private <T> Future<T> rejected() {
+        rejected.incrementAndGet();
+        return Future.failedFuture(new RejectedExecutionException("JDBC task queue is full"));
+    }
+
+    private <T> void run(Context context, Future<T> future, Task<T> task) {
+        T result;
+        try (Connection connection = dataSource().getConnection()) {
+            try {
+                result = task.run(connection);
+                connection.commit();
+            } catch (Exception e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (Exception e) {
+            context.runOnContext(v -> future.fail(e));
+            return;
+        }
+        context.runOnContext(v -> future.complete(result));
+    }
+
+    private HikariDataSource dataSource() throws SQLException {
+        HikariDataSource opened = dataSource;
+        if (opened != null) {
+            return opened;
+        }
+        synchronized (this) {
+            if (dataSource == null) {
+                opened = new HikariDataSource(config);
+                try (Connection connection = opened.getConnection()) {
+                    createSchema(connection);
+                    connection.commit();
+                } catch (SQLException | RuntimeException e) {
+                    opened.close();
+                    throw e;
+                }
+                dataSource = opened;
+            }
+            return dataSource;
+        }
+    }
+
+    private static void createSchema(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : SCHEMA) {
+                statement.execute(sql);
+            }
+        }
+        // a new version never repeats one that clients may still hold in an ETag from a dropped table
+        createCounter(connection, VERSION, System.currentTimeMillis());
+        createCounter(connection, LAST_ID, 0);
+        // deletes from before the tombstones table are not on record
+        createCounter(connection, HORIZON, counter(connection, VERSION));
+    }
+
+    private static void createCounter(Connection connection, String name, long initial) throws SQLException {
+        try (PreparedStatement select = connection.prepareStatement("SELECT val FROM todo_counter WHERE name = ?")) {
+            select.setString(1, name);
+            try (ResultSet rs = select.executeQuery()) {
+                if (rs.next()) {
+                    return;
+                }
+            }
+        }
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO todo_counter (name, val) VALUES (?, ?)")) {
+            insert.setString(1, name);
+            insert.setLong(2, initial);
+            insert.executeUpdate();
+        }
+    }
+
+    static long counter(Connection connection, String name) throws SQLException {
+        try (PreparedStatement select = connection.prepareStatement("SELECT val FROM todo_counter WHERE name = ?")) {
+            select.setString(1, name);
+            try (ResultSet rs = select.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        }
+    }
+
+    /** Adds {@code delta} to a counter and returns the new value, the row stays locked until the transaction ends. */
+    static long advance(Connection connection, String name, long delta) throws SQLException {
+        try (PreparedStatement update = connection.prepareStatement("UPDATE todo_counter SET val = val + ? WHERE name = ?")) {
+            update.setLong(1, delta);
+            update.setString(2, name);
+            update.executeUpdate();
+        }
+        return counter(connection, name);
+    }
+
+    /** Sets a counter to {@code value} unless it is already past it. */
+    static void raise(Connection connection, String name, long value) throws SQLException {
+        try (PreparedStatement update = connection.prepareStatement("UPDATE todo_counter SET val = ? WHERE name = ? AND val < ?")) {
+            update.setLong(1, value);
+            update.setString(2, name);
+            update.setLong(3, value);
+            update.executeUpdate();
+        }
+    }
+
+    public JsonObject stats() {
+        JsonObject stats = new JsonObject().put("rejected", rejected.get());
+        if (executor instanceof ThreadPoolExecutor) {
+            ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+            stats.put("running", pool.getActiveCount()).put("queued", pool.getQueue().size());
+        } else {
+            stats.put("running", capacity - permits.availablePermits()).put("queued", 0);
+        }
+        HikariDataSource opened = dataSource;
+        if (opened != null) {
+            HikariPoolMXBean pool = opened.getHikariPoolMXBean();
+            stats.put("connections_active", pool.getActiveConnections())
+                    .put("connections_idle", pool.getIdleConnections())
+                    .put("connections_waiting", pool.getThreadsAwaitingConnection());
+        }
+        return stats;
+    }
+
+    interface Task<T> {
+        T run(Connection connection) throws Exception;
+    }
+}
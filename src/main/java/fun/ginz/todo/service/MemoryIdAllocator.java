@@ -0,0 +1,46 @@
+package fun.ginz.todo.service;
+
+import io.vertx.core.Future;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class MemoryIdAllocator implements IdAllocator {
+
+    private final MemoryTodoEngine engine;
+
+    public MemoryIdAllocator(MemoryTodoEngine engine) {
+        this.engine = engine;
+    }
+
+    @Override
+    public Future<Integer> next() {
+        if (engine.isReady()) {
+            return Future.succeededFuture(engine.lastId().incrementAndGet());
+        }
+        // the highest id is only known once the journal has been replayed
+        return engine.read((map, index, journal) -> engine.lastId().incrementAndGet());
+    }
+
+    @Override
+    public Future<Void> observe(int id) {
+        if (engine.isReady()) {
+            return advance(engine.lastId(), id) ? Future.succeededFuture() : Future.failedFuture(new IdTakenException(id));
+        }
+        return engine.read((map, index, journal) -> {
+            if (!advance(engine.lastId(), id)) {
+                throw new IdTakenException(id);
+            }
+            return null;
+        });
+    }
+
+    /** Moves the last id up to {@code id}, unless it was handed out already. */
+    private static boolean advance(AtomicInteger lastId, int id) {
+        for (int last = lastId.get(); last < id; last = lastId.get()) {
+            if (lastId.compareAndSet(last, id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
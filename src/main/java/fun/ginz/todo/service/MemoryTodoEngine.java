@@ -0,0 +1,236 @@
+package fun.ginz.todo.service;
+
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.core.shareddata.Shareable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Embedded store shared by every verticle instance of a Vert.x instance. The table and its
+ * indexes are owned by one writer thread: callers queue tasks to it and get their result back on
+ * their own context, so neither needs locks. That thread also appends each write to the journal and
+ * takes a snapshot every {@code snapshotInterval} milliseconds when anything changed.
+ * <p>
+ * Every {@link #shared} call has to be matched by a {@link #release}, the last one closes the journal
+ * and stops the writer thread.
+ */
+public class MemoryTodoEngine implements Shareable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MemoryTodoEngine.class);
+
+    private static final String SHARED_MAP = "fun.ginz.todo";
+    private static final int TOMBSTONES = 10000;
+
+    private final Vertx vertx;
+    private final String key;
+    private final ScheduledExecutorService owner;
+    private final IntTodoMap map = new IntTodoMap();
+    private final TodoIndex index = new TodoIndex();
+    private final TodoChangeLog changes;
+    private final TodoJournal journal;
+    private final AtomicInteger lastId = new AtomicInteger();
+    private final AtomicLong version = new AtomicLong();
+
+    private volatile boolean ready;
+    private volatile Exception failure;
+    private boolean dirty;
+    /** Snapshots failed since the last one written, only the first of a run is logged. */
+    private int failedSnapshots;
+    /** Callers of {@link #shared} that have not released the engine, counted under the shared map's lock. */
+    private int users;
+
+    private MemoryTodoEngine(Vertx vertx, String key, File dir, long snapshotInterval, boolean fsync, int tombstones) {
+        this.vertx = vertx;
+        this.key = key;
+        this.changes = new TodoChangeLog(tombstones);
+        this.owner = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "todo-memory-engine");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        TodoJournal opened = null;
+        try {
+            opened = new TodoJournal(dir, fsync);
+        } catch (IOException e) {
+            failure = e;
+        }
+        this.journal = opened;
+
+        owner.execute(this::recover);
+        owner.scheduleWithFixedDelay(this::snapshot, snapshotInterval, snapshotInterval, TimeUnit.MILLISECONDS);
+    }
+
+    public static MemoryTodoEngine shared(Vertx vertx, File dir, long snapshotInterval, boolean fsync) {
+        return shared(vertx, dir, snapshotInterval, fsync, TOMBSTONES);
+    }
+
+    /**
+     * @param tombstones how many deleted ids to remember for clients syncing changes, the ones
+     *                   that last synced before the oldest of them have to start over
+     */
+    public static MemoryTodoEngine shared(Vertx vertx, File dir, long snapshotInterval, boolean fsync, int tombstones) {
+        return (MemoryTodoEngine) vertx.sharedData().<String, Shareable>getLocalMap(SHARED_MAP).compute(
+                "memory.engine:" + dir.getAbsolutePath(), (key, shared) -> {
+                    MemoryTodoEngine engine = shared != null ? (MemoryTodoEngine) shared
+                            : new MemoryTodoEngine(vertx, key, dir, snapshotInterval, fsync, tombstones);
+                    engine.users++;
+                    return engine;
+                });
+    }
+
+    /** Gives up one {@link #shared} reference, closing the engine once nobody holds one. */
+    public Future<Void> release() {
+        boolean[] last = new boolean[1];
+        vertx.sharedData().<String, Shareable>getLocalMap(SHARED_MAP).computeIfPresent(key, (name, shared) -> {
+            last[0] = shared == this && --users == 0;
+            return last[0] ? null : shared;
+        });
+        if (!last[0]) {
+            return Future.succeededFuture();
+        }
+        Context context = vertx.getOrCreateContext();
+        Future<Void> closed = Future.future();
+        owner.execute(() -> {
+            try {
+                if (journal != null) {
+                    journal.close();
+                }
+            } catch (IOException e) {
+                context.runOnContext(v -> closed.fail(e));
+                return;
+            } finally {
+                owner.shutdown();
+            }
+            context.runOnContext(v -> closed.complete());
+        });
+        return closed;
+    }
+
+    private void recover() {
+        if (failure != null) {
+            return;
+        }
+        try {
+            journal.replay(map);
+            long[] maxVersion = new long[1];
+            map.forEach((id, doc) -> {
+                JsonObject todo = new JsonObject(doc);
+                index.add(id, todo);
+                long todoVersion = todo.getLong("version", 0L);
+                changes.put(id, todoVersion);
+                maxVersion[0] = Math.max(maxVersion[0], todoVersion);
+            });
+            lastId.set(map.maxKey());
+            // a journal cleared before the restart leaves no versions behind, the clock keeps the
+            // collection version from repeating one that clients may still hold in an ETag
+            version.set(Math.max(maxVersion[0], System.currentTimeMillis()));
+            // deletes are not journaled with their version, so nothing before now can be synced from
+            changes.raiseHorizon(version.get());
+            ready = true;
+        } catch (Exception e) {
+            failure = e;
+        }
+    }
+
+    private void snapshot() {
+        if (!dirty || failure != null) {
+            return;
+        }
+        try {
+            journal.snapshot(map);
+            dirty = false;
+        } catch (IOException e) {
+            // the journal still has every write, it only grows until a snapshot goes through
+            if (failedSnapshots++ == 0) {
+                LOGGER.warn("snapshotting the memory store failed, retrying every interval", e);
+            }
+            return;
+        }
+        if (failedSnapshots > 0) {
+            LOGGER.info("snapshotted the memory store after " + failedSnapshots + " failed attempts");
+            failedSnapshots = 0;
+        }
+    }
+
+    /** Completes once the journal has been replayed, or fails with the reason it could not be. */
+    public Future<Void> warmUp() {
+        return read((map, index, journal) -> null);
+    }
+
+    boolean isReady() {
+        return ready;
+    }
+
+    AtomicInteger lastId() {
+        return lastId;
+    }
+
+    /**
+     * Collection version, bumped once by every write task that changes something. Only the
+     * engine thread may increment it.
+     */
+    AtomicLong version() {
+        return version;
+    }
+
+    /** Every todo by the version it last changed at, owned by the engine thread like the table. */
+    TodoChangeLog changes() {
+        return changes;
+    }
+
+    <T> Future<T> read(Task<T> task) {
+        return submit(false, task);
+    }
+
+    <T> Future<T> write(Task<T> task) {
+        return submit(true, task);
+    }
+
+    private <T> Future<T> submit(boolean write, Task<T> task) {
+        if (owner.isShutdown()) {
+            return Future.failedFuture(new IllegalStateException("the engine for " + key + " is closed"));
+        }
+        Context context = vertx.getOrCreateContext();
+        Future<T> future = Future.future();
+        owner.execute(() -> {
+            T result;
+            try {
+                if (failure != null) {
+                    throw failure;
+                }
+                result = task.run(map, index, journal);
+                if (write) {
+                    try {
+                        journal.flush();
+                    } catch (IOException e) {
+                        // the write is in the table already, serving it would hand out what a restart loses
+                        failure = e;
+                        throw e;
+                    }
+                    dirty = true;
+                }
+            } catch (Exception e) {
+                context.runOnContext(v -> future.fail(e));
+                return;
+            }
+            context.runOnContext(v -> future.complete(result));
+        });
+        return future;
+    }
+
+    interface Task<T> {
+        T run(IntTodoMap map, TodoIndex index, TodoJournal journal) throws Exception;
+    }
+}
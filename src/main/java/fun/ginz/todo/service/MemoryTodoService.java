@@ -0,0 +1,295 @@
+package fun.ginz.todo.service;
+
+import fun.ginz.todo.codec.TodoJson;
+import fun.ginz.todo.entity.Todo;
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+public class MemoryTodoService implements TodoService {
+
+    /** Never stored, the table keeps it for its free slots. */
+    private static final int NO_ID = 0;
+
+    private final MemoryTodoEngine engine;
+    private final boolean prettyJson;
+
+    public MemoryTodoService(MemoryTodoEngine engine, boolean prettyJson) {
+        this.engine = engine;
+        this.prettyJson = prettyJson;
+    }
+
+    private String encode(Todo todo) {
+        return TodoJson.encode(todo, prettyJson).toString();
+    }
+
+    /** The id, or {@link #NO_ID} for one that cannot have been stored, which callers skip the engine for. */
+    private static int parseId(String todoID) {
+        try {
+            return Integer.parseInt(todoID);
+        } catch (NumberFormatException e) {
+            return NO_ID;
+        }
+    }
+
+    @Override
+    public Future<Boolean> initData() {
+        // ids continue from the highest stored one here, so a random id would eat up the id space
+        return engine.write((map, index, journal) -> {
+            int id = engine.lastId().incrementAndGet();
+            Todo todo = new Todo(id, "Something to do...", false, 1, "todo/ex");
+            todo.setVersion(engine.version().incrementAndGet());
+            String encoded = encode(todo);
+            map.put(id, encoded);
+            index.add(id, 1, false);
+            engine.changes().put(id, todo.getVersion());
+            journal.appendPut(id, encoded);
+            return true;
+        });
+    }
+
+    @Override
+    public Future<Todo> insert(Todo todo) {
+        return engine.write((map, index, journal) -> {
+            todo.setVersion(engine.version().incrementAndGet());
+            String encoded = encode(todo);
+            map.put(todo.getId(), encoded);
+            index.add(todo.getId(), todo.getOrder(), todo.getCompleted());
+            engine.changes().put(todo.getId(), todo.getVersion());
+            journal.appendPut(todo.getId(), encoded);
+            return todo;
+        });
+    }
+
+    @Override
+    public Future<List<Todo>> insertAll(List<Todo> todos) {
+        return engine.write((map, index, journal) -> {
+            long version = engine.version().incrementAndGet();
+            for (Todo todo : todos) {
+                todo.setVersion(version);
+                String encoded = encode(todo);
+                map.put(todo.getId(), encoded);
+                index.add(todo.getId(), todo.getOrder(), todo.getCompleted());
+                engine.changes().put(todo.getId(), version);
+                journal.appendPut(todo.getId(), encoded);
+            }
+            return todos;
+        });
+    }
+
+    @Override
+    public Future<List<Todo>> getAll() {
+        return engine.read((map, index, journal) -> {
+            List<String> docs = new ArrayList<>(map.size());
+            map.forEach((id, doc) -> docs.add(doc));
+            return docs;
+        }).map(docs -> docs.stream().map(Todo::new).collect(Collectors.toList()));
+    }
+
+    @Override
+    public Future<Page<Todo>> scan(String cursor, int count) {
+        return scanRaw(cursor, count).map(page -> new Page<>(
+                page.getItems().stream().map(Todo::new).collect(Collectors.toList()),
+                page.getCursor()));
+    }
+
+    @Override
+    public Future<Page<String>> scanRaw(String cursor, int count) {
+        final int slot;
+        try {
+            slot = Integer.parseInt(cursor);
+        } catch (NumberFormatException e) {
+            return Future.failedFuture(e);
+        }
+        return engine.read((map, index, journal) -> {
+            List<String> docs = new ArrayList<>(count);
+            int next = map.scan(slot, count, (id, doc) -> docs.add(doc));
+            return new Page<>(docs, String.valueOf(next));
+        });
+    }
+
+    @Override
+    public Future<Page<Todo>> query(TodoQuery query) {
+        return queryRaw(query).map(page -> new Page<>(
+                page.getItems().stream().map(Todo::new).collect(Collectors.toList()),
+                page.getCursor()));
+    }
+
+    @Override
+    public Future<Page<String>> queryRaw(TodoQuery query) {
+        // the cursor is the last index entry handed out, entries never have id 0 so "0" stays free
+        final long after;
+        try {
+            after = Long.parseLong(query.getCursor());
+        } catch (NumberFormatException e) {
+            return Future.failedFuture(e);
+        }
+        final boolean first = Page.FIRST.equals(query.getCursor());
+        return engine.read((map, index, journal) -> {
+            NavigableSet<Long> entries = index.select(query.getCompleted());
+            if (query.isDescending()) {
+                entries = (first ? entries : entries.headSet(after, false)).descendingSet();
+            } else if (!first) {
+                entries = entries.tailSet(after, false);
+            }
+
+            List<String> docs = new ArrayList<>(query.getLimit());
+            Iterator<Long> it = entries.iterator();
+            long last = 0;
+            while (docs.size() < query.getLimit() && it.hasNext()) {
+                last = it.next();
+                docs.add(map.get(TodoIndex.id(last)));
+            }
+            return new Page<>(docs, it.hasNext() ? String.valueOf(last) : Page.FIRST);
+        });
+    }
+
+    @Override
+    public Future<Optional<Todo>> getCertain(String todoID) {
+        return getCertainRaw(todoID).map(raw -> raw.map(Todo::new));
+    }
+
+    @Override
+    public Future<Optional<String>> getCertainRaw(String todoID) {
+        final int id = parseId(todoID);
+        if (id == NO_ID) {
+            return Future.succeededFuture(Optional.empty());
+        }
+        return engine.read((map, index, journal) -> Optional.ofNullable(map.get(id)));
+    }
+
+    @Override
+    public Future<List<String>> getManyRaw(List<String> todoIDs) {
+        final int[] ids = todoIDs.stream().mapToInt(MemoryTodoService::parseId).toArray();
+        return engine.read((map, index, journal) -> {
+            List<String> docs = new ArrayList<>(ids.length);
+            for (int id : ids) {
+                docs.add(id == NO_ID ? null : map.get(id));
+            }
+            return docs;
+        });
+    }
+
+    @Override
+    public Future<Todo> update(String todoID, Todo newTodo) {
+        Todo patch = new Todo(newTodo);
+        patch.setId(parseId(todoID));
+        if (patch.getId() == NO_ID) {
+            // never stored, so there is nothing to update
+            return Future.succeededFuture(null);
+        }
+        return updateAll(Collections.singletonList(patch)).map(merged -> merged.get(0));
+    }
+
+    @Override
+    public Future<List<Todo>> updateAll(List<Todo> patches) {
+        final List<JsonObject> fields = patches.stream().map(Todo::toPatch).collect(Collectors.toList());
+        return engine.write((map, index, journal) -> {
+            List<String> merged = new ArrayList<>(patches.size());
+            long version = 0;
+            for (int i = 0; i < patches.size(); i++) {
+                int id = patches.get(i).getId();
+                String doc = id == NO_ID ? null : map.get(id);
+                if (doc == null) {
+                    merged.add(null);
+                    continue;
+                }
+                if (version == 0) {
+                    version = engine.version().incrementAndGet();
+                }
+                // same field-by-field merge as the Redis script
+                JsonObject todo = new JsonObject(doc).mergeIn(fields.get(i)).put("version", version);
+                doc = todo.encode();
+                map.put(id, doc);
+                index.add(id, todo);
+                engine.changes().put(id, version);
+                journal.appendPut(id, doc);
+                merged.add(doc);
+            }
+            return merged;
+        }).map(docs -> docs.stream().map(doc -> doc == null ? null : TodoJson.decode(doc)).collect(Collectors.toList()));
+    }
+
+    @Override
+    public Future<Void> delete(String todoID) {
+        final int id = parseId(todoID);
+        if (id == NO_ID) {
+            return Future.succeededFuture();
+        }
+        return engine.write((map, index, journal) -> {
+            if (map.remove(id) != null) {
+                index.remove(id);
+                journal.appendRemove(id);
+                engine.changes().remove(id, engine.version().incrementAndGet());
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public Future<Void> deleteMany(List<String> todoIDs) {
+        final int[] ids = todoIDs.stream().mapToInt(MemoryTodoService::parseId).filter(id -> id != NO_ID).toArray();
+        if (ids.length == 0) {
+            return Future.succeededFuture();
+        }
+        return engine.write((map, index, journal) -> {
+            long version = 0;
+            for (int id : ids) {
+                if (map.remove(id) != null) {
+                    if (version == 0) {
+                        version = engine.version().incrementAndGet();
+                    }
+                    index.remove(id);
+                    journal.appendRemove(id);
+                    engine.changes().remove(id, version);
+                }
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public Future<Void> deleteAll() {
+        return engine.write((map, index, journal) -> {
+            map.clear();
+            index.clear();
+            journal.appendClear();
+            engine.changes().clear(engine.version().incrementAndGet());
+            return null;
+        });
+    }
+
+    @Override
+    public Future<Changes> changes(String since, int limit) {
+        final long from;
+        try {
+            from = Long.parseLong(since);
+        } catch (NumberFormatException e) {
+            return Future.failedFuture(e);
+        }
+        final boolean origin = Changes.ORIGIN.equals(since);
+        return engine.read((map, index, journal) -> {
+            TodoChangeLog changes = engine.changes();
+            long version = engine.version().get();
+            if (!origin && (from < changes.horizon() || from > version)) {
+                return Changes.expired();
+            }
+            return changes.read(origin ? Long.MIN_VALUE : from, limit, version, map::get);
+        });
+    }
+
+    @Override
+    public Future<Long> version() {
+        if (engine.isReady()) {
+            return Future.succeededFuture(engine.version().get());
+        }
+        return engine.read((map, index, journal) -> engine.version().get());
+    }
+}
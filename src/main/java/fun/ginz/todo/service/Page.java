@@ -0,0 +1,28 @@
+package fun.ginz.todo.service;
+
+import java.util.List;
+
+public class Page<T> {
+
+    public static final String FIRST = "0";
+
+    private final List<T> items;
+    private final String cursor;
+
+    public Page(List<T> items, String cursor) {
+        this.items = items;
+        this.cursor = cursor;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    public boolean isLast() {
+        return FIRST.equals(cursor);
+    }
+}
@@ -0,0 +1,115 @@
+package fun.ginz.todo.service;
+
+import fun.ginz.todo.entity.Todo;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Decorator publishing every successful write on the event bus, so that change feeds on any
+ * verticle instance, or any node of a cluster, can push it to their clients. The message body is the
+ * compact JSON event, encoded once here, and its {@code type} header is one of insert, update,
+ * delete or clear:
+ * <pre>
+ * {"type":"insert","todos":[...]}   {"type":"delete","ids":["1","2"]}
+ * {"type":"update","todos":[...]}   {"type":"clear"}
+ * </pre>
+ * Deletes carry the requested ids, whether they existed or not.
+ */
+public class PublishingTodoService extends ForwardingTodoService {
+
+    public static final String INSERT = "insert";
+    public static final String UPDATE = "update";
+    public static final String DELETE = "delete";
+    public static final String CLEAR = "clear";
+
+    private final Vertx vertx;
+    private final String address;
+
+    public PublishingTodoService(Vertx vertx, TodoService delegate, String address) {
+        super(delegate);
+        this.vertx = vertx;
+        this.address = address;
+    }
+
+    private void publish(JsonObject event) {
+        vertx.eventBus().publish(address, event.encode(),
+                new DeliveryOptions().addHeader("type", event.getString("type")));
+    }
+
+    private void publishTodos(String type, List<Todo> todos) {
+        JsonArray array = new JsonArray();
+        todos.stream().filter(Objects::nonNull).forEach(todo -> array.add(todo.toJson()));
+        if (!array.isEmpty()) {
+            publish(new JsonObject().put("type", type).put("todos", array));
+        }
+    }
+
+    @Override
+    public Future<Todo> insert(Todo todo) {
+        return delegate.insert(todo).map(inserted -> {
+            publishTodos(INSERT, Collections.singletonList(inserted));
+            return inserted;
+        });
+    }
+
+    @Override
+    public Future<List<Todo>> insertAll(List<Todo> todos) {
+        return delegate.insertAll(todos).map(inserted -> {
+            publishTodos(INSERT, inserted);
+            return inserted;
+        });
+    }
+
+    @Override
+    public Future<Todo> update(String todoID, Todo newTodo) {
+        return delegate.update(todoID, newTodo).map(merged -> {
+            publishTodos(UPDATE, Collections.singletonList(merged));
+            return merged;
+        });
+    }
+
+    @Override
+    public Future<List<Todo>> updateAll(List<Todo> patches) {
+        return delegate.updateAll(patches).map(merged -> {
+            publishTodos(UPDATE, merged);
+            return merged;
+        });
+    }
+
+    @Override
+    public Future<Void> delete(String todoID) {
+        return delegate.delete(todoID).map(v -> {
+            publishIds(Collections.singletonList(todoID));
+            return v;
+        });
+    }
+
+    @Override
+    public Future<Void> deleteMany(List<String> todoIDs) {
+        return delegate.deleteMany(todoIDs).map(v -> {
+            publishIds(todoIDs);
+            return v;
+        });
+    }
+
+    private void publishIds(List<String> todoIDs) {
+        if (!todoIDs.isEmpty()) {
+            publish(new JsonObject().put("type", DELETE).put("ids", new JsonArray(todoIDs)));
+        }
+    }
+
+    @Override
+    public Future<Void> deleteAll() {
+        return delegate.deleteAll().map(v -> {
+            publish(new JsonObject().put("type", CLEAR));
+            return v;
+        });
+    }
+}
@@ -0,0 +1,122 @@
+package fun.ginz.todo.service;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.net.SocketAddress;
+import io.vertx.redis.RedisOptions;
+import io.vertx.redis.client.Redis;
+import io.vertx.redis.client.Request;
+import io.vertx.redis.client.Response;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One connection of the binary-safe Redis client, which unlike {@code RedisClient} hands out
+ * replies as the buffers they were read into. It connects on first use and, once broken,
+ * reconnects on the next command; commands issued meanwhile wait for the connection.
+ * Meant to be used from a single context, usually as a member of a {@link RedisPool}.
+ */
+class RedisConnection {
+
+    private final Vertx vertx;
+    private final RedisOptions config;
+
+    private Redis redis;
+    private List<Handler<AsyncResult<Redis>>> connecting;
+
+    private int pending;
+    private long connects;
+    private long disconnects;
+    private long connectFailures;
+
+    RedisConnection(Vertx vertx, RedisOptions config) {
+        this.vertx = vertx;
+        this.config = config;
+    }
+
+    private void connect(Handler<AsyncResult<Redis>> handler) {
+        if (redis != null) {
+            handler.handle(Future.succeededFuture(redis));
+            return;
+        }
+        if (connecting != null) {
+            connecting.add(handler);
+            return;
+        }
+        connecting = new ArrayList<>();
+        connecting.add(handler);
+        Redis.createClient(vertx, new io.vertx.redis.client.RedisOptions()
+                .setEndpoint(SocketAddress.inetSocketAddress(config.getPort(), config.getHost()))
+                .setPassword(config.getAuth())
+                .setSelect(config.getSelect())).connect(res -> {
+            if (res.succeeded()) {
+                Redis conn = res.result();
+                redis = conn;
+                connects++;
+                conn.endHandler(v -> broken(conn)).exceptionHandler(e -> broken(conn));
+            } else {
+                connectFailures++;
+            }
+            List<Handler<AsyncResult<Redis>>> waiters = connecting;
+            connecting = null;
+            for (Handler<AsyncResult<Redis>> waiter : waiters) {
+                waiter.handle(res);
+            }
+        });
+    }
+
+    private void broken(Redis conn) {
+        if (redis == conn) {
+            redis = null;
+            disconnects++;
+        }
+    }
+
+    /** Connects now rather than on the first command. */
+    Future<Void> open() {
+        Future<Void> future = Future.future();
+        connect(conn -> future.handle(conn.mapEmpty()));
+        return future;
+    }
+
+    Future<Response> send(Request request) {
+        Future<Response> future = Future.future();
+        pending++;
+        Handler<AsyncResult<Response>> reply = res -> {
+            pending--;
+            future.handle(res);
+        };
+        connect(conn -> {
+            if (conn.failed()) {
+                reply.handle(Future.failedFuture(conn.cause()));
+            } else {
+                conn.result().send(request, reply);
+            }
+        });
+        return future;
+    }
+
+    /** Commands sent and not answered yet, including those waiting for the connection. */
+    int pending() {
+        return pending;
+    }
+
+    boolean isConnected() {
+        return redis != null;
+    }
+
+    long connects() {
+        return connects;
+    }
+
+    long disconnects() {
+        return disconnects;
+    }
+
+    long connectFailures() {
+        return connectFailures;
+    }
+}
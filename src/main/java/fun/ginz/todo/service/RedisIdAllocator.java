@@ -0,0 +1,129 @@
+package fun.ginz.todo.service;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.redis.RedisClient;
+import io.vertx.redis.Script;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hands out ids from blocks leased off a Redis counter with INCRBY, so only one allocation in
+ * {@code blockSize} costs a round trip and ids stay unique across instances, nodes and restarts.
+ * An id a client picks is only free above the counter, or in this instance's block ahead of the
+ * ids it handed out.
+ */
+public class RedisIdAllocator implements IdAllocator {
+
+    private static final Script ADVANCE = RedisTodoService.loadScript("advance_id");
+
+    private final RedisClient redis;
+    private final String key;
+    private final int blockSize;
+    private final AtomicReference<Block> block = new AtomicReference<>(new Block(1, 0));
+    private final AtomicBoolean leasing = new AtomicBoolean();
+    private final Queue<Future<Void>> waiters = new ConcurrentLinkedQueue<>();
+
+    public RedisIdAllocator(RedisClient redis, String key, int blockSize) {
+        this.redis = redis;
+        this.key = key;
+        this.blockSize = blockSize;
+    }
+
+    @Override
+    public Future<Integer> next() {
+        Block current = block.get();
+        int id = current.next.getAndIncrement();
+        if (id <= current.last) {
+            return Future.succeededFuture(id);
+        }
+        return lease(current).compose(v -> next());
+    }
+
+    /** Leases a block now, if none is left, so that the next create does not wait for one. */
+    public Future<Void> prefetch() {
+        Block current = block.get();
+        return current.next.get() <= current.last ? Future.succeededFuture() : lease(current);
+    }
+
+    private Future<Void> lease(Block exhausted) {
+        // a bulk create can exhaust a block many times over, so callers queue up behind one INCRBY
+        Future<Void> future = Future.future();
+        waiters.add(future);
+        if (!leasing.compareAndSet(false, true)) {
+            return future;
+        }
+        if (block.get() != exhausted) {
+            leased(Future.succeededFuture());
+            return future;
+        }
+
+        redis.incrby(key, blockSize, res -> {
+            if (res.succeeded()) {
+                int last = res.result().intValue();
+                block.set(new Block(last - blockSize + 1, last));
+            }
+            leased(res);
+        });
+        return future;
+    }
+
+    private void leased(AsyncResult<?> res) {
+        leasing.set(false);
+        // resumed callers may queue up again right away, those wait for the next lease
+        List<Future<Void>> ready = new ArrayList<>();
+        for (Future<Void> waiter; (waiter = waiters.poll()) != null; ) {
+            ready.add(waiter);
+        }
+        for (Future<Void> waiter : ready) {
+            if (res.succeeded()) {
+                waiter.complete();
+            } else {
+                waiter.fail(res.cause());
+            }
+        }
+    }
+
+    @Override
+    public Future<Void> observe(int id) {
+        // ids of this block that are still to come are reserved by moving past them
+        Block current = block.get();
+        if (id <= current.last) {
+            for (int next = current.next.get(); next <= id; next = current.next.get()) {
+                if (current.next.compareAndSet(next, id + 1)) {
+                    return Future.succeededFuture();
+                }
+            }
+        }
+
+        // anything up to the counter is handed out already or leased to some instance
+        Future<Void> future = Future.future();
+        redis.evalScript(ADVANCE, Collections.singletonList(key), Collections.singletonList(String.valueOf(id)), res -> {
+            if (res.failed()) {
+                future.fail(res.cause());
+            } else if (res.result().getLong(0) == 1) {
+                future.complete();
+            } else {
+                future.fail(new IdTakenException(id));
+            }
+        });
+        return future;
+    }
+
+    private static final class Block {
+        private final AtomicInteger next;
+        private final int last;
+
+        private Block(int first, int last) {
+            this.next = new AtomicInteger(first);
+            this.last = last;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package fun.ginz.todo.service;
+
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.redis.RedisOptions;
+import io.vertx.redis.Script;
+import io.vertx.redis.client.Command;
+import io.vertx.redis.client.Request;
+import io.vertx.redis.client.Response;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A fixed set of {@link RedisConnection}s that commands are spread over, either to each in turn
+ * ({@code round-robin}) or to the one with the fewest replies outstanding ({@code least-pending}),
+ * which also steers around a connection that is slow or reconnecting. No connection gets more than
+ * {@code depth} commands pipelined; past that, commands wait in the pool for the first reply on any
+ * of them, and with {@code maxQueued} waiting they fail right away with a
+ * {@link RejectedExecutionException}. Meant to be used from a single context.
+ */
+public class RedisPool {
+
+    private static final int DEPTH = 256;
+    private static final int MAX_QUEUED = 4096;
+
+    private final RedisConnection[] connections;
+    private final boolean leastPending;
+    private final int depth;
+    private final int maxQueued;
+    private final Deque<Queued> queue = new ArrayDeque<>();
+
+    private int next;
+    private long rejected;
+
+    public RedisPool(Vertx vertx, RedisOptions config) {
+        this(vertx, config, 1, "round-robin", DEPTH, MAX_QUEUED);
+    }
+
+    public RedisPool(Vertx vertx, RedisOptions config, int size, String selection, int depth, int maxQueued) {
+        if (size < 1 || depth < 1) {
+            throw new IllegalArgumentException("a Redis pool needs at least one connection and a depth of one");
+        }
+        switch (selection) {
+            case "round-robin":
+                this.leastPending = false;
+                break;
+            case "least-pending":
+                this.leastPending = true;
+                break;
+            default:
+                throw new IllegalArgumentException("unknown Redis pool selection: " + selection);
+        }
+        this.connections = new RedisConnection[size];
+        for (int i = 0; i < size; i++) {
+            connections[i] = new RedisConnection(vertx, config);
+        }
+        this.depth = depth;
+        this.maxQueued = maxQueued;
+    }
+
+    /** Connects every member now rather than on its first command. */
+    Future<Void> open() {
+        List<Future> opened = new ArrayList<>();
+        for (RedisConnection connection : connections) {
+            opened.add(connection.open());
+        }
+        return CompositeFuture.all(opened).mapEmpty();
+    }
+
+    Future<Response> send(Request request) {
+        RedisConnection connection = select();
+        if (connection != null) {
+            return dispatch(connection, request);
+        }
+        if (queue.size() >= maxQueued) {
+            rejected++;
+            return Future.failedFuture(new RejectedExecutionException("Redis pool queue is full"));
+        }
+        Future<Response> future = Future.future();
+        queue.add(new Queued(request, future));
+        return future;
+    }
+
+    private RedisConnection select() {
+        if (leastPending) {
+            RedisConnection best = null;
+            for (RedisConnection connection : connections) {
+                if (connection.pending() < depth && (best == null || connection.pending() < best.pending())) {
+                    best = connection;
+                }
+            }
+            return best;
+        }
+        for (int i = 0; i < connections.length; i++) {
+            RedisConnection connection = connections[next];
+            next = (next + 1) % connections.length;
+            if (connection.pending() < depth) {
+                return connection;
+            }
+        }
+        return null;
+    }
+
+    private Future<Response> dispatch(RedisConnection connection, Request request) {
+        Future<Response> future = Future.future();
+        connection.send(request).setHandler(res -> {
+            // commands waiting in the pool go before any the caller sends on this reply
+            drain();
+            future.handle(res);
+        });
+        return future;
+    }
+
+    private void drain() {
+        for (RedisConnection connection; !queue.isEmpty() && (connection = select()) != null; ) {
+            Queued queued = queue.poll();
+            dispatch(connection, queued.request).setHandler(queued.future);
+        }
+    }
+
+    /**
+     * Runs {@code script} by its digest and falls back to sending the source when the server
+     * does not know it yet. Arguments are sent as they are if they are buffers, as text otherwise.
+     */
+    Future<Response> eval(Script script, List<String> keys, List<?> args) {
+        return send(script(Command.EVALSHA, script.getSha1(), keys, args)).recover(e -> {
+            if (e.getMessage() != null && e.getMessage().startsWith("NOSCRIPT")) {
+                return send(script(Command.EVAL, script.getScript(), keys, args));
+            }
+            return Future.failedFuture(e);
+        });
+    }
+
+    private static Request script(Command command, String script, List<String> keys, List<?> args) {
+        Request request = Request.cmd(command).arg(script).arg(keys.size());
+        for (String key : keys) {
+            request.arg(key);
+        }
+        for (Object arg : args) {
+            if (arg instanceof Buffer) {
+                request.arg((Buffer) arg);
+            } else {
+                request.arg(String.valueOf(arg));
+            }
+        }
+        return request;
+    }
+
+    public JsonObject stats() {
+        int connected = 0;
+        long pending = 0;
+        long reconnects = 0;
+        long disconnects = 0;
+        long connectFailures = 0;
+        for (RedisConnection connection : connections) {
+            connected += connection.isConnected() ? 1 : 0;
+            pending += connection.pending();
+            reconnects += Math.max(0, connection.connects() - 1);
+            disconnects += connection.disconnects();
+            connectFailures += connection.connectFailures();
+        }
+        return new JsonObject()
+                .put("size", connections.length)
+                .put("connected", connected)
+                .put("pending", pending)
+                .put("queued", queue.size())
+                .put("rejected", rejected)
+                .put("reconnects", reconnects)
+                .put("disconnects", disconnects)
+                .put("connect_failures", connectFailures);
+    }
+
+    private static final class Queued {
+        private final Request request;
+        private final Future<Response> future;
+
+        private Queued(Request request, Future<Response> future) {
+            this.request = request;
+            this.future = future;
+        }
+    }
+}
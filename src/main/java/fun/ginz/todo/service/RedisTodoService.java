@@ -1,29 +1,249 @@
 package fun.ginz.todo.service;
 
 import fun.ginz.todo.Contants;
+import fun.ginz.todo.codec.JsonTodoCodec;
+import fun.ginz.todo.codec.TodoCodec;
 import fun.ginz.todo.entity.Todo;
+import fun.ginz.todo.metrics.CommandMetrics;
+import fun.ginz.todo.metrics.TodoMetrics;
+import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
 import io.vertx.core.Vertx;
-import io.vertx.core.json.Json;
-import io.vertx.redis.RedisClient;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
 import io.vertx.redis.RedisOptions;
+import io.vertx.redis.Script;
+import io.vertx.redis.client.Command;
+import io.vertx.redis.client.Request;
+import io.vertx.redis.client.Response;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Random;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
+/**
+ * Todos in Redis hashes, kept in step with their order indexes by Lua scripts. With one shard, the
+ * default, everything lives under {@link Contants#REDIS_TODO_KEY}. With more, ids are hashed onto
+ * that many sets of keys tagged {@code {n}} (the hash, its indexes and its version, so that they
+ * stay on one node of a cluster too), spread over the given endpoints in turn. Reads of the whole
+ * collection fan out to every shard in parallel, and the collection version is the sum of the
+ * shard versions, which still grows with every write.
+ * <p>
+ * The scripts also log every write in a sorted set of todo ids by the version they last changed
+ * at, deleted ones included, so that {@link #changes} reads only what changed. Of the deleted
+ * ones, the newest {@code tombstones} per shard are kept.
+ */
 public class RedisTodoService implements TodoService {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(RedisTodoService.class);
+
+    private static final Script INSERT = loadScript("insert");
+    private static final Script UPDATE = loadScript("update");
+    private static final Script DELETE = loadScript("delete");
+    private static final Script QUERY = loadScript("query");
+    private static final Script REINDEX = loadScript("reindex");
+    private static final Script CLEAR = loadScript("clear");
+    private static final Script SYNC = loadScript("sync");
+
+    private static final int TOMBSTONES = 10000;
+
+    // the hash, the indexes, the collection version and the change log, as the scripts that keep
+    // them in step expect them
+    private static final List<String> INDEXED_KEYS = Arrays.asList(Contants.REDIS_TODO_KEY,
+            Contants.REDIS_ORDER_INDEX, Contants.REDIS_OPEN_INDEX, Contants.REDIS_DONE_INDEX,
+            Contants.REDIS_VERSION_KEY, Contants.REDIS_CHANGES_KEY, Contants.REDIS_TOMBSTONES_KEY,
+            Contants.REDIS_HORIZON_KEY);
+
     private final Vertx vertx;
-    private final RedisOptions config;
-    private final RedisClient redis;
+    private final List<RedisPool> endpoints;
+    private final Shard[] shards;
+    private final ShardRing ring;
+    private final TodoCodec codec;
+    private final int tombstones;
+
+    private final CommandMetrics insertMetrics;
+    private final CommandMetrics hvalsMetrics;
+    private final CommandMetrics hscanMetrics;
+    private final CommandMetrics hgetMetrics;
+    private final CommandMetrics hmgetMetrics;
+    private final CommandMetrics queryMetrics;
+    private final CommandMetrics updateMetrics;
+    private final CommandMetrics deleteMetrics;
+    private final CommandMetrics clearMetrics;
+    private final CommandMetrics versionMetrics;
+    private final CommandMetrics syncMetrics;
+    private final Future<Void> warmUp;
 
     public RedisTodoService(Vertx vertx, RedisOptions config) {
+        this(vertx, config, false);
+    }
+
+    public RedisTodoService(Vertx vertx, RedisOptions config, boolean prettyJson) {
+        this(vertx, config, new JsonTodoCodec(prettyJson), null);
+    }
+
+    public RedisTodoService(Vertx vertx, RedisOptions config, TodoCodec codec, TodoMetrics metrics) {
+        this(vertx, new RedisPool(vertx, config), codec, metrics);
+    }
+
+    public RedisTodoService(Vertx vertx, RedisPool redis, TodoCodec codec, TodoMetrics metrics) {
+        this(vertx, Collections.singletonList(redis), 1, codec, metrics);
+    }
+
+    public RedisTodoService(Vertx vertx, List<RedisPool> endpoints, int shards, TodoCodec codec,
+                            TodoMetrics metrics) {
+        this(vertx, endpoints, shards, codec, metrics, TOMBSTONES);
+    }
+
+    public RedisTodoService(Vertx vertx, List<RedisPool> endpoints, int shards, TodoCodec codec,
+                            TodoMetrics metrics, int tombstones) {
         this.vertx = vertx;
-        this.config = config;
-        this.redis = RedisClient.create(vertx, config);
+        this.endpoints = endpoints;
+        this.ring = new ShardRing(shards);
+        this.shards = new Shard[shards];
+        for (int i = 0; i < shards; i++) {
+            this.shards[i] = new Shard(endpoints.get(i % endpoints.size()), shards == 1 ? INDEXED_KEYS : shardKeys(i));
+        }
+        this.codec = codec;
+        this.tombstones = tombstones;
+        this.insertMetrics = command(metrics, "EVALSHA insert");
+        this.hvalsMetrics = command(metrics, "HVALS");
+        this.hscanMetrics = command(metrics, "HSCAN");
+        this.hgetMetrics = command(metrics, "HGET");
+        this.hmgetMetrics = command(metrics, "HMGET");
+        this.queryMetrics = command(metrics, "EVALSHA query");
+        this.updateMetrics = command(metrics, "EVALSHA update");
+        this.deleteMetrics = command(metrics, "EVALSHA delete");
+        this.clearMetrics = command(metrics, "EVALSHA clear");
+        this.versionMetrics = command(metrics, "GET");
+        this.syncMetrics = command(metrics, "EVALSHA sync");
+        this.warmUp = this.prepareScripts();
+    }
+
+    /** {@code VERT_TODO:order} of shard 3 is {@code VERT_TODO{3}:order}, and so on. */
+    private static List<String> shardKeys(int shard) {
+        String tagged = Contants.REDIS_TODO_KEY + "{" + shard + "}";
+        return INDEXED_KEYS.stream()
+                .map(key -> tagged + key.substring(Contants.REDIS_TODO_KEY.length()))
+                .collect(Collectors.toList());
+    }
+
+    private static CommandMetrics command(TodoMetrics metrics, String name) {
+        return metrics == null ? CommandMetrics.DISABLED : metrics.command(name);
+    }
+
+    /** The script with the shared helpers of {@code prelude.lua} in front of it. */
+    static Script loadScript(String name) {
+        return Script.create(readScript("prelude") + readScript(name));
+    }
+
+    private static String readScript(String name) {
+        try (InputStream in = RedisTodoService.class.getResourceAsStream("/lua/" + name + ".lua")) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] chunk = new byte[4096];
+            for (int n; (n = in.read(chunk)) > 0; ) {
+                out.write(chunk, 0, n);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Future<Void> prepareScripts() {
+        List<Future> prepared = new ArrayList<>();
+        for (RedisPool redis : new LinkedHashSet<>(endpoints)) {
+            prepared.add(redis.open());
+            // EVALSHA falls back to EVAL on NOSCRIPT, this only saves shipping the source on first use
+            for (Script script : Arrays.asList(INSERT, UPDATE, DELETE, QUERY, CLEAR, SYNC)) {
+                prepared.add(redis.send(Request.cmd(Command.SCRIPT).arg("LOAD").arg(script.getScript())));
+            }
+        }
+        for (Shard shard : shards) {
+            // start a fresh collection version from the clock, so that it does not repeat versions
+            // handed out in ETags before the data was flushed
+            Request seed = Request.cmd(Command.SET).arg(shard.version())
+                    .arg(System.currentTimeMillis()).arg("NX");
+            prepared.add(shard.redis.send(seed));
+            // a no-op unless the todos were stored before the indexes or the change log existed
+            prepared.add(shard.redis.eval(REINDEX, shard.keys, Collections.emptyList()));
+        }
+        // with the server down every step fails the same way, the first one says it all
+        return CompositeFuture.all(prepared).<Void>mapEmpty().recover(e -> {
+            LOGGER.warn("preparing redis failed, commands connect and load the scripts when they are sent", e);
+            return Future.failedFuture(e);
+        });
+    }
+
+    /**
+     * Completes once the connections are up and the scripts are loaded. Nothing waits for it,
+     * commands sent earlier queue for their connection, but a server can tell when its first
+     * request no longer pays for the handshake.
+     */
+    public Future<Void> warmUp() {
+        return warmUp;
+    }
+
+    /** Maps the reply of a command just sent, recording its round trip under {@code metrics}. */
+    private <T> Future<T> call(CommandMetrics metrics, Future<Response> reply, Function<Response, T> mapper) {
+        long start = System.nanoTime();
+        Future<T> future = Future.future();
+        reply.setHandler(res -> {
+            metrics.record(start, res.succeeded());
+            if (res.succeeded()) {
+                future.complete(mapper.apply(res.result()));
+            } else {
+                future.fail(res.cause());
+            }
+        });
+        return future;
+    }
+
+    private Shard shardOf(String todoID) {
+        return shards[ring.shardOf(todoID)];
+    }
+
+    /** Positions in {@code todoIDs} by the shard the ids belong to. */
+    private Map<Shard, List<Integer>> byShard(List<String> todoIDs) {
+        Map<Shard, List<Integer>> positions = new LinkedHashMap<>();
+        for (int i = 0; i < todoIDs.size(); i++) {
+            positions.computeIfAbsent(shardOf(todoIDs.get(i)), shard -> new ArrayList<>()).add(i);
+        }
+        return positions;
+    }
+
+    /** Runs {@code call} on every shard at once, with the results in shard order. */
+    private <T> Future<List<T>> fanOut(Function<Shard, Future<T>> call) {
+        if (shards.length == 1) {
+            return call.apply(shards[0]).map(Collections::singletonList);
+        }
+        List<Future> calls = new ArrayList<>(shards.length);
+        for (Shard shard : shards) {
+            calls.add(call.apply(shard));
+        }
+        return CompositeFuture.all(calls).map(all -> {
+            List<T> results = new ArrayList<>(shards.length);
+            for (int i = 0; i < shards.length; i++) {
+                results.add(all.resultAt(i));
+            }
+            return results;
+        });
     }
 
     @Override
@@ -38,79 +258,387 @@ public class RedisTodoService implements TodoService {
 
     @Override
     public Future<Todo> insert(Todo todo) {
-        Future<Todo> future = Future.future();
-        final String encoded = Json.encodePrettily(todo);
-        this.redis.hset(Contants.REDIS_TODO_KEY, String.valueOf(todo.getId()), encoded, res -> {
-            if (res.succeeded()) {
-                future.complete(todo);
-            } else {
-                future.fail(res.cause());
+        return insertAll(Collections.singletonList(todo)).map(todo);
+    }
+
+    @Override
+    public Future<List<Todo>> insertAll(List<Todo> todos) {
+        if (todos.isEmpty()) {
+            return Future.succeededFuture(todos);
+        }
+        List<String> todoIDs = todos.stream().map(todo -> String.valueOf(todo.getId())).collect(Collectors.toList());
+        List<Future> inserted = new ArrayList<>();
+        byShard(todoIDs).forEach((shard, positions) -> {
+            List<Object> args = new ArrayList<>(positions.size() * 4);
+            for (int i : positions) {
+                Todo todo = todos.get(i);
+                args.add(todo.getId());
+                args.add(todo.getOrder());
+                args.add(todo.getCompleted() ? "1" : "0");
+                args.add(codec.encode(todo));
             }
+            inserted.add(call(insertMetrics, shard.redis.eval(INSERT, shard.keys, args), res -> {
+                long version = res.toLong();
+                positions.forEach(i -> todos.get(i).setVersion(version));
+                return null;
+            }));
         });
-        return future;
+        return CompositeFuture.all(inserted).map(todos);
     }
 
     @Override
     public Future<List<Todo>> getAll() {
-        Future<List<Todo>> future = Future.future();
-        this.redis.hvals(Contants.REDIS_TODO_KEY, res -> {
-            if (res.succeeded()) {
-                future.complete(res.result().stream().map(x -> new Todo((String) x)).collect(Collectors.toList()));
-            } else {
-                future.fail(res.cause());
+        return fanOut(shard -> call(hvalsMetrics, shard.redis.send(Request.cmd(Command.HVALS).arg(shard.hash())), res -> {
+            List<Todo> todos = new ArrayList<>(res.size());
+            for (Response doc : res) {
+                todos.add(TodoCodec.decode(doc.toBuffer()));
             }
+            return todos;
+        })).map(parts -> {
+            if (parts.size() == 1) {
+                return parts.get(0);
+            }
+            List<Todo> todos = new ArrayList<>(parts.stream().mapToInt(List::size).sum());
+            parts.forEach(todos::addAll);
+            return todos;
+        });
+    }
+
+    @Override
+    public Future<Page<Todo>> scan(String cursor, int count) {
+        return scanRaw(cursor, count).map(page -> new Page<>(
+                page.getItems().stream().map(Todo::new).collect(Collectors.toList()),
+                page.getCursor()));
+    }
+
+    @Override
+    public Future<Page<String>> scanRaw(String cursor, int count) {
+        // sharded, the cursor is the shard followed by the HSCAN cursor within it, as in "2.17"
+        final int index;
+        final String shardCursor;
+        if (Page.FIRST.equals(cursor)) {
+            index = 0;
+            shardCursor = cursor;
+        } else if (shards.length == 1) {
+            // checked here, Redis would count a cursor it cannot parse as a failed command
+            try {
+                Long.parseUnsignedLong(cursor);
+            } catch (NumberFormatException e) {
+                return Future.failedFuture(e);
+            }
+            index = 0;
+            shardCursor = cursor;
+        } else {
+            int dot = cursor.indexOf('.');
+            try {
+                index = Integer.parseInt(cursor.substring(0, Math.max(dot, 0)));
+                shardCursor = cursor.substring(dot + 1);
+                Long.parseUnsignedLong(shardCursor);
+                if (index < 0 || index >= shards.length) {
+                    throw new NumberFormatException("no shard " + index);
+                }
+            } catch (NumberFormatException e) {
+                return Future.failedFuture(e);
+            }
+        }
+        Shard shard = shards[index];
+        Request request = Request.cmd(Command.HSCAN).arg(shard.hash()).arg(shardCursor).arg("COUNT").arg(count);
+        return call(hscanMetrics, shard.redis.send(request), res -> {
+            // HSCAN replies with [next cursor, [field, value, field, value, ...]]
+            Response entries = res.get(1);
+            List<String> items = new ArrayList<>(entries.size() / 2);
+            for (int i = 1; i < entries.size(); i += 2) {
+                items.add(TodoCodec.toJson(entries.get(i).toBuffer()));
+            }
+            String next = res.get(0).toString();
+            if (shards.length > 1) {
+                next = !Page.FIRST.equals(next) ? index + "." + next
+                        : index + 1 < shards.length ? (index + 1) + "." + Page.FIRST : Page.FIRST;
+            }
+            return new Page<>(items, next);
+        });
+    }
+
+    @Override
+    public Future<Page<Todo>> query(TodoQuery query) {
+        return queryRaw(query).map(page -> new Page<>(
+                page.getItems().stream().map(Todo::new).collect(Collectors.toList()),
+                page.getCursor()));
+    }
+
+    @Override
+    public Future<Page<String>> queryRaw(TodoQuery query) {
+        int index = query.getCompleted() == null ? 1 : query.getCompleted() ? 3 : 2;
+        // the cursor is the order and id of the last todo handed out, as "order.id", and every shard
+        // resumes after that same entry
+        List<Object> args = new ArrayList<>(4);
+        args.add(query.getLimit());
+        args.add(query.isDescending() ? "1" : "0");
+        if (!Page.FIRST.equals(query.getCursor())) {
+            int dot = query.getCursor().lastIndexOf('.');
+            try {
+                args.add(Integer.parseInt(query.getCursor().substring(0, Math.max(dot, 0))));
+                args.add(Integer.parseInt(query.getCursor().substring(dot + 1)));
+            } catch (NumberFormatException e) {
+                return Future.failedFuture(e);
+            }
+        }
+        if (shards.length == 1) {
+            Shard shard = shards[0];
+            return call(queryMetrics, shard.redis.eval(QUERY, Arrays.asList(shard.hash(), shard.keys.get(index)), args),
+                    res -> {
+                        List<String> items = new ArrayList<>(res.size() / 3);
+                        for (int i = 3; i < res.size(); i += 3) {
+                            items.add(TodoCodec.toJson(res.get(i).toBuffer()));
+                        }
+                        boolean more = "1".equals(res.get(0).toString()) && res.size() > 1;
+                        return new Page<>(items, more
+                                ? res.get(res.size() - 2).toString() + "." + res.get(res.size() - 3).toString()
+                                : Page.FIRST);
+                    });
+        }
+
+        // every shard may hold the whole next page, the merge takes the first of them in index order
+        List<Future> pages = new ArrayList<>(shards.length);
+        for (Shard shard : shards) {
+            pages.add(call(queryMetrics, shard.redis.eval(QUERY, Arrays.asList(shard.hash(), shard.keys.get(index)), args),
+                    res -> res));
+        }
+        return CompositeFuture.all(pages).map(all -> {
+            List<Indexed> candidates = new ArrayList<>();
+            boolean more = false;
+            for (int i = 0; i < shards.length; i++) {
+                Response res = all.resultAt(i);
+                more |= "1".equals(res.get(0).toString());
+                for (int j = 1; j + 2 < res.size(); j += 3) {
+                    candidates.add(new Indexed(res.get(j).toString(), res.get(j + 1).toInteger(), res.get(j + 2).toBuffer()));
+                }
+            }
+            // the order a sorted set keeps: by score, then by member
+            Comparator<Indexed> order = Comparator.<Indexed>comparingInt(item -> item.order)
+                    .thenComparing(item -> item.id);
+            candidates.sort(query.isDescending() ? order.reversed() : order);
+
+            int taken = Math.min(query.getLimit(), candidates.size());
+            List<String> items = new ArrayList<>(taken);
+            for (Indexed item : candidates.subList(0, taken)) {
+                items.add(TodoCodec.toJson(item.doc));
+            }
+            if (taken == 0 || !more && taken == candidates.size()) {
+                return new Page<>(items, Page.FIRST);
+            }
+            Indexed last = candidates.get(taken - 1);
+            return new Page<>(items, last.order + "." + last.id);
         });
-        return future;
     }
 
     @Override
     public Future<Optional<Todo>> getCertain(String todoID) {
-        Future<Optional<Todo>> future = Future.future();
-        this.redis.hget(Contants.REDIS_TODO_KEY, todoID, res -> {
-            if (res.succeeded()) {
-                future.complete(Optional.ofNullable(res.result() == null ? null : new Todo(res.result())));
-            } else {
-                future.fail(res.cause());
+        Shard shard = shardOf(todoID);
+        return call(hgetMetrics, shard.redis.send(Request.cmd(Command.HGET).arg(shard.hash()).arg(todoID)),
+                res -> Optional.ofNullable(res).map(doc -> TodoCodec.decode(doc.toBuffer())));
+    }
+
+    @Override
+    public Future<Optional<String>> getCertainRaw(String todoID) {
+        Shard shard = shardOf(todoID);
+        return call(hgetMetrics, shard.redis.send(Request.cmd(Command.HGET).arg(shard.hash()).arg(todoID)),
+                res -> Optional.ofNullable(res).map(doc -> TodoCodec.toJson(doc.toBuffer())));
+    }
+
+    @Override
+    public Future<List<String>> getManyRaw(List<String> todoIDs) {
+        if (todoIDs.isEmpty()) {
+            return Future.succeededFuture(Collections.emptyList());
+        }
+        String[] docs = new String[todoIDs.size()];
+        List<Future> fetched = new ArrayList<>();
+        byShard(todoIDs).forEach((shard, positions) -> {
+            Request request = Request.cmd(Command.HMGET).arg(shard.hash());
+            for (int i : positions) {
+                request.arg(todoIDs.get(i));
             }
+            fetched.add(call(hmgetMetrics, shard.redis.send(request), res -> {
+                for (int i = 0; i < res.size(); i++) {
+                    Response doc = res.get(i);
+                    docs[positions.get(i)] = doc == null ? null : TodoCodec.toJson(doc.toBuffer());
+                }
+                return null;
+            }));
         });
-        return future;
+        return CompositeFuture.all(fetched).map(all -> Arrays.asList(docs));
     }
 
     @Override
     public Future<Todo> update(String todoID, Todo newTodo) {
-        return getCertain(todoID).compose(old -> {
-            if (old.isPresent()) {
-                Todo result = old.get().merge(newTodo);
-                return this.insert(result);
-            } else {
-                return Future.succeededFuture();
+        return merge(Collections.singletonList(todoID), Collections.singletonList(newTodo.toPatch().encode()))
+                .map(merged -> merged.get(0));
+    }
+
+    @Override
+    public Future<List<Todo>> updateAll(List<Todo> patches) {
+        if (patches.isEmpty()) {
+            return Future.succeededFuture(patches);
+        }
+        List<String> todoIDs = new ArrayList<>(patches.size());
+        List<String> encoded = new ArrayList<>(patches.size());
+        for (Todo patch : patches) {
+            todoIDs.add(String.valueOf(patch.getId()));
+            encoded.add(patch.toPatch().encode());
+        }
+        return merge(todoIDs, encoded);
+    }
+
+    private Future<List<Todo>> merge(List<String> todoIDs, List<String> patches) {
+        Todo[] merged = new Todo[todoIDs.size()];
+        List<Future> updated = new ArrayList<>();
+        byShard(todoIDs).forEach((shard, positions) -> {
+            List<String> args = new ArrayList<>(positions.size() * 2 + 1);
+            args.add(codec.isPrettyJson() ? "1" : "0");
+            for (int i : positions) {
+                args.add(todoIDs.get(i));
+                args.add(patches.get(i));
             }
+            updated.add(call(updateMetrics, shard.redis.eval(UPDATE, shard.keys, args), res -> {
+                for (int i = 0; i < res.size(); i++) {
+                    Buffer doc = res.get(i).toBuffer();
+                    merged[positions.get(i)] = doc.length() == 0 ? null : TodoCodec.decode(doc);
+                }
+                return null;
+            }));
         });
+        return CompositeFuture.all(updated).map(all -> Arrays.asList(merged));
     }
 
     @Override
     public Future<Void> delete(String todoID) {
-        Future<Void> future = Future.future();
-        this.redis.hdel(Contants.REDIS_TODO_KEY, todoID, res -> {
-            if (res.succeeded()) {
-                future.complete();
-            } else {
-                future.fail(res.cause());
-            }
+        return deleteMany(Collections.singletonList(todoID));
+    }
+
+    @Override
+    public Future<Void> deleteMany(List<String> todoIDs) {
+        if (todoIDs.isEmpty()) {
+            return Future.succeededFuture();
+        }
+        List<Future> deleted = new ArrayList<>();
+        byShard(todoIDs).forEach((shard, positions) -> {
+            List<String> args = new ArrayList<>(positions.size() + 1);
+            args.add(String.valueOf(tombstones));
+            positions.forEach(i -> args.add(todoIDs.get(i)));
+            deleted.add(call(deleteMetrics, shard.redis.eval(DELETE, shard.keys, args), res -> null));
         });
-        return future;
+        return CompositeFuture.all(deleted).mapEmpty();
     }
 
     @Override
     public Future<Void> deleteAll() {
-        Future<Void> future = Future.future();
-        this.redis.del(Contants.REDIS_TODO_KEY, res -> {
-           if (res.succeeded()) {
-               future.complete();
-           } else {
-               future.fail(res.cause());
-           }
+        return fanOut(shard -> call(clearMetrics, shard.redis.eval(CLEAR, shard.keys, Collections.emptyList()),
+                res -> null)).mapEmpty();
+    }
+
+    @Override
+    public Future<Long> version() {
+        return fanOut(shard -> call(versionMetrics, shard.redis.send(Request.cmd(Command.GET).arg(shard.version())),
+                res -> res == null ? 0L : res.toLong())).map(versions -> {
+            long sum = 0;
+            for (long version : versions) {
+                sum += version;
+            }
+            return sum;
         });
-        return future;
+    }
+
+    @Override
+    public Future<Changes> changes(String since, int limit) {
+        // sharded, the version is one per shard joined by dots, as in "1712.1690.1733"
+        final String[] versions = new String[shards.length];
+        if (Changes.ORIGIN.equals(since)) {
+            Arrays.fill(versions, Changes.ORIGIN);
+        } else {
+            String[] parts = since.split("\\.", -1);
+            try {
+                if (parts.length != shards.length) {
+                    throw new NumberFormatException("version " + since + " is not for " + shards.length + " shards");
+                }
+                for (int i = 0; i < parts.length; i++) {
+                    versions[i] = String.valueOf(Long.parseLong(parts[i]));
+                }
+            } catch (NumberFormatException e) {
+                return Future.failedFuture(e);
+            }
+        }
+
+        // every shard gets its share of the limit, and may still go over it to hand out a version whole
+        int share = Math.max(1, (limit + shards.length - 1) / shards.length);
+        List<Future> replies = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            Shard shard = shards[i];
+            replies.add(call(syncMetrics, shard.redis.eval(SYNC,
+                    Arrays.asList(shard.hash(), shard.changes(), shard.horizon(), shard.version()),
+                    Arrays.asList(versions[i], String.valueOf(share))), res -> res));
+        }
+        return CompositeFuture.all(replies).map(all -> {
+            List<String> items = new ArrayList<>();
+            List<Integer> deleted = new ArrayList<>();
+            String[] reached = new String[shards.length];
+            boolean last = true;
+            for (int i = 0; i < shards.length; i++) {
+                Response res = all.resultAt(i);
+                if (res.size() == 0) {
+                    return Changes.expired();
+                }
+                reached[i] = res.get(0).toString();
+                last &= "0".equals(res.get(1).toString());
+                for (int j = 2; j < res.size(); j += 2) {
+                    Buffer doc = res.get(j + 1).toBuffer();
+                    if (doc.length() == 0) {
+                        deleted.add(Integer.valueOf(res.get(j).toString()));
+                    } else {
+                        items.add(TodoCodec.toJson(doc));
+                    }
+                }
+            }
+            return new Changes(items, deleted, String.join(".", reached), last);
+        });
+    }
+
+    /** The keys of one shard, in the order of {@link #INDEXED_KEYS}, and the endpoint holding them. */
+    private static final class Shard {
+        private final RedisPool redis;
+        private final List<String> keys;
+
+        private Shard(RedisPool redis, List<String> keys) {
+            this.redis = redis;
+            this.keys = keys;
+        }
+
+        private String hash() {
+            return keys.get(0);
+        }
+
+        private String version() {
+            return keys.get(4);
+        }
+
+        private String changes() {
+            return keys.get(5);
+        }
+
+        private String horizon() {
+            return keys.get(7);
+        }
+    }
+
+    /** A document read from the index of one shard, with the entry it sorts by. */
+    private static final class Indexed {
+        private final String id;
+        private final int order;
+        private final Buffer doc;
+
+        private Indexed(String id, int order, Buffer doc) {
+            this.id = id;
+            this.order = order;
+            this.doc = doc;
+        }
     }
 }
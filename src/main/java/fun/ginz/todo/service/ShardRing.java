@@ -0,0 +1,68 @@
+package fun.ginz.todo.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Consistent hashing of todo ids onto a number of shards. Every shard owns {@code VNODES} points
+ * of the ring so the ids spread evenly, and a ring grown by one shard takes only about
+ * 1/(shards + 1) of the ids away from the others.
+ */
+final class ShardRing {
+
+    private static final int VNODES = 128;
+
+    private final int shards;
+    private final int[] points;
+    private final int[] owners;
+
+    ShardRing(int shards) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("a shard ring needs at least one shard");
+        }
+        this.shards = shards;
+        // the point in the high half and its shard in the low one, so that sorting keeps them together
+        long[] ring = new long[shards * VNODES];
+        for (int shard = 0; shard < shards; shard++) {
+            for (int vnode = 0; vnode < VNODES; vnode++) {
+                ring[shard * VNODES + vnode] = (long) hash("shard-" + shard + "-" + vnode) << 32 | shard;
+            }
+        }
+        Arrays.sort(ring);
+        this.points = new int[ring.length];
+        this.owners = new int[ring.length];
+        for (int i = 0; i < ring.length; i++) {
+            points[i] = (int) (ring[i] >> 32);
+            owners[i] = (int) ring[i];
+        }
+    }
+
+    int size() {
+        return shards;
+    }
+
+    int shardOf(String id) {
+        if (shards == 1) {
+            return 0;
+        }
+        int at = Arrays.binarySearch(points, hash(id));
+        if (at < 0) {
+            at = -at - 1;
+        }
+        return owners[at == points.length ? 0 : at];
+    }
+
+    private static int hash(String key) {
+        CRC32 crc = new CRC32();
+        crc.update(key.getBytes(StandardCharsets.UTF_8));
+        // CRC32 barely changes between keys like "17" and "18", the finalizer of MurmurHash3 spreads them
+        int h = (int) crc.getValue();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -0,0 +1,136 @@
+package fun.ginz.todo.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.function.IntFunction;
+
+/**
+ * The memory engine's counterpart of the Redis change log: every todo by the version it last
+ * changed at, deleted ones included, of which only the newest {@code maxTombstones} are kept.
+ * Dropping one moves the horizon up to its version, as changes after earlier versions can no
+ * longer be told in full. Not thread-safe.
+ */
+class TodoChangeLog {
+
+    private static final Comparator<Change> ORDER = Comparator.<Change>comparingLong(change -> change.version)
+            .thenComparingInt(change -> change.id);
+
+    private final NavigableSet<Change> changes = new TreeSet<>(ORDER);
+    private final NavigableSet<Change> tombstones = new TreeSet<>(ORDER);
+    private final Map<Integer, Change> latest = new HashMap<>();
+    private final int maxTombstones;
+    private long horizon;
+
+    TodoChangeLog(int maxTombstones) {
+        this.maxTombstones = maxTombstones;
+    }
+
+    void put(int id, long version) {
+        add(new Change(id, version, false));
+    }
+
+    void remove(int id, long version) {
+        Change tombstone = new Change(id, version, true);
+        add(tombstone);
+        tombstones.add(tombstone);
+        while (tombstones.size() > maxTombstones) {
+            Change oldest = tombstones.pollFirst();
+            changes.remove(oldest);
+            latest.remove(oldest.id);
+            raiseHorizon(oldest.version);
+        }
+    }
+
+    void raiseHorizon(long version) {
+        horizon = Math.max(horizon, version);
+    }
+
+    private void add(Change change) {
+        Change previous = latest.put(change.id, change);
+        if (previous != null) {
+            changes.remove(previous);
+            if (previous.deleted) {
+                tombstones.remove(previous);
+            }
+        }
+        changes.add(change);
+    }
+
+    /** Forgets everything, no version before {@code version} can be synced from anymore. */
+    void clear(long version) {
+        changes.clear();
+        tombstones.clear();
+        latest.clear();
+        horizon = version;
+    }
+
+    /**
+     * The changes after {@code since} ({@code Long.MIN_VALUE} for all), cut short after
+     * {@code limit} at the end of a version, with the documents of the todos still there.
+     */
+    Changes read(long since, int limit, long version, IntFunction<String> docs) {
+        Iterator<Change> it = changes.tailSet(new Change(Integer.MAX_VALUE, since, false), false).iterator();
+        List<Change> taken = new ArrayList<>(Math.min(limit, changes.size()));
+        while (taken.size() < limit && it.hasNext()) {
+            taken.add(it.next());
+        }
+        long upto = version;
+        boolean last = !it.hasNext();
+        if (!last) {
+            Change next = it.next();
+            int keep = taken.size();
+            while (keep > 0 && taken.get(keep - 1).version == next.version) {
+                keep--;
+            }
+            if (keep > 0) {
+                taken = taken.subList(0, keep);
+            } else {
+                // one version alone is over the limit, and it is only handed out whole
+                taken.add(next);
+                while (it.hasNext()) {
+                    Change change = it.next();
+                    if (change.version != next.version) {
+                        break;
+                    }
+                    taken.add(change);
+                }
+            }
+            upto = taken.get(taken.size() - 1).version;
+            // nothing can follow the collection version
+            last = upto == version;
+        }
+
+        List<String> items = new ArrayList<>(taken.size());
+        List<Integer> deleted = new ArrayList<>();
+        for (Change change : taken) {
+            if (change.deleted) {
+                deleted.add(change.id);
+            } else {
+                items.add(docs.apply(change.id));
+            }
+        }
+        return new Changes(items, deleted, String.valueOf(upto), last);
+    }
+
+    long horizon() {
+        return horizon;
+    }
+
+    private static final class Change {
+        private final int id;
+        private final long version;
+        private final boolean deleted;
+
+        private Change(int id, long version, boolean deleted) {
+            this.id = id;
+            this.version = version;
+            this.deleted = deleted;
+        }
+    }
+}
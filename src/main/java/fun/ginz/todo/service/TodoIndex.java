@@ -0,0 +1,63 @@
+package fun.ginz.todo.service;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * The memory engine's counterpart of the Redis order indexes: sorted sets of todos by order,
+ * one over all todos and one per completion state. Entries are {@code order} in the high and
+ * the id in the low 32 bits of a long, so ties in order come out by id. Not thread-safe.
+ */
+class TodoIndex {
+
+    private final NavigableSet<Long> all = new TreeSet<>();
+    private final NavigableSet<Long> open = new TreeSet<>();
+    private final NavigableSet<Long> done = new TreeSet<>();
+    private final Map<Integer, Long> entries = new HashMap<>();
+
+    static long entry(int order, int id) {
+        return ((long) order << 32) | (id & 0xFFFFFFFFL);
+    }
+
+    static int id(long entry) {
+        return (int) entry;
+    }
+
+    void add(int id, JsonObject doc) {
+        Integer order = doc.getInteger("order");
+        add(id, order == null ? 0 : order, Boolean.TRUE.equals(doc.getBoolean("completed")));
+    }
+
+    void add(int id, int order, boolean completed) {
+        remove(id);
+        long entry = entry(order, id);
+        entries.put(id, entry);
+        all.add(entry);
+        (completed ? done : open).add(entry);
+    }
+
+    void remove(int id) {
+        Long entry = entries.remove(id);
+        if (entry != null) {
+            all.remove(entry);
+            open.remove(entry);
+            done.remove(entry);
+        }
+    }
+
+    void clear() {
+        all.clear();
+        open.clear();
+        done.clear();
+        entries.clear();
+    }
+
+    /** All todos for {@code null}, otherwise only the completed or only the open ones. */
+    NavigableSet<Long> select(Boolean completed) {
+        return completed == null ? all : completed ? done : open;
+    }
+}
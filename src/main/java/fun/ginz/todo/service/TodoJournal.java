@@ -0,0 +1,157 @@
+package fun.ginz.todo.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Snapshot plus append-only log of an {@link IntTodoMap} in one directory. Records are an opcode,
+ * the id and, for puts, a length-prefixed UTF-8 document. A torn record at the end of the log
+ * (from a crash mid-write) ends the replay. All methods block and are meant for the engine thread.
+ */
+class TodoJournal {
+
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final byte CLEAR = 3;
+
+    private final File snapshot;
+    private final File snapshotTmp;
+    private final File log;
+    private final boolean fsync;
+
+    private FileOutputStream logFile;
+    private DataOutputStream logOut;
+
+    TodoJournal(File dir, boolean fsync) throws IOException {
+        Files.createDirectories(dir.toPath());
+        this.snapshot = new File(dir, "todos.snapshot");
+        this.snapshotTmp = new File(dir, "todos.snapshot.tmp");
+        this.log = new File(dir, "todos.log");
+        this.fsync = fsync;
+    }
+
+    void replay(IntTodoMap map) throws IOException {
+        if (snapshot.exists()) {
+            read(snapshot, map);
+        }
+        if (log.exists()) {
+            read(log, map);
+        }
+        openLog(true);
+    }
+
+    private void read(File file, IntTodoMap map) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                byte op;
+                try {
+                    op = in.readByte();
+                } catch (EOFException e) {
+                    return;
+                }
+                try {
+                    switch (op) {
+                        case PUT:
+                            int id = in.readInt();
+                            map.put(id, readString(in));
+                            break;
+                        case REMOVE:
+                            map.remove(in.readInt());
+                            break;
+                        case CLEAR:
+                            map.clear();
+                            break;
+                        default:
+                            return;
+                    }
+                } catch (EOFException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private void openLog(boolean append) throws IOException {
+        logFile = new FileOutputStream(log, append);
+        logOut = new DataOutputStream(new BufferedOutputStream(logFile));
+    }
+
+    void appendPut(int id, String doc) throws IOException {
+        logOut.writeByte(PUT);
+        logOut.writeInt(id);
+        writeString(logOut, doc);
+    }
+
+    void appendRemove(int id) throws IOException {
+        logOut.writeByte(REMOVE);
+        logOut.writeInt(id);
+    }
+
+    void appendClear() throws IOException {
+        logOut.writeByte(CLEAR);
+    }
+
+    void flush() throws IOException {
+        logOut.flush();
+        if (fsync) {
+            logFile.getFD().sync();
+        }
+    }
+
+    /**
+     * Writes the whole map to a fresh snapshot and starts an empty log. Replaying a log that
+     * survived a crash right after the rename on top of the new snapshot still ends in the same state.
+     */
+    void snapshot(IntTodoMap map) throws IOException {
+        flush();
+        try (FileOutputStream file = new FileOutputStream(snapshotTmp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file))) {
+            IOException[] failure = new IOException[1];
+            map.forEach((id, doc) -> {
+                try {
+                    out.writeByte(PUT);
+                    out.writeInt(id);
+                    writeString(out, doc);
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(snapshotTmp.toPath(), snapshot.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        logOut.close();
+        openLog(false);
+    }
+
+    void close() throws IOException {
+        logOut.close();
+    }
+}
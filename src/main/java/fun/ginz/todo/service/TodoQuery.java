@@ -0,0 +1,38 @@
+package fun.ginz.todo.service;
+
+/**
+ * A filtered listing served from the indexes: todos in {@code order}, optionally only the open
+ * or only the completed ones. The cursor is opaque and specific to the backend, start with
+ * {@link Page#FIRST}.
+ */
+public class TodoQuery {
+
+    private final Boolean completed;
+    private final boolean descending;
+    private final String cursor;
+    private final int limit;
+
+    public TodoQuery(Boolean completed, boolean descending, String cursor, int limit) {
+        this.completed = completed;
+        this.descending = descending;
+        this.cursor = cursor;
+        this.limit = limit;
+    }
+
+    /** {@code null} for all todos. */
+    public Boolean getCompleted() {
+        return completed;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+}
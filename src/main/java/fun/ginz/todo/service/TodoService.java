@@ -12,14 +12,45 @@ public interface TodoService {
 
     Future<Todo> insert(Todo todo);
 
+    Future<List<Todo>> insertAll(List<Todo> todos);
+
     Future<List<Todo>> getAll();
 
+    Future<Page<Todo>> scan(String cursor, int count);
+
+    Future<Page<String>> scanRaw(String cursor, int count);
+
+    Future<Page<Todo>> query(TodoQuery query);
+
+    Future<Page<String>> queryRaw(TodoQuery query);
+
     Future<Optional<Todo>> getCertain(String todoID);
 
+    Future<Optional<String>> getCertainRaw(String todoID);
+
+    Future<List<String>> getManyRaw(List<String> todoIDs);
+
     Future<Todo> update(String todoID, Todo newTodo);
 
+    Future<List<Todo>> updateAll(List<Todo> patches);
+
     Future<Void> delete(String todoID);
 
+    Future<Void> deleteMany(List<String> todoIDs);
+
     Future<Void> deleteAll();
 
+    /**
+     * The todos written and deleted after {@code since}, a version from earlier changes or
+     * {@link Changes#ORIGIN}, at most about {@code limit} of them. Fails with a
+     * {@link NumberFormatException} for a version that was not handed out by this backend.
+     */
+    Future<Changes> changes(String since, int limit);
+
+    /**
+     * Current collection version. It changes with every insert, update and delete, so anything
+     * rendered from the collection after reading it stays valid until it changes again.
+     */
+    Future<Long> version();
+
 }
@@ -0,0 +1,463 @@
+package fun.ginz.todo.service;
+
+import fun.ginz.todo.codec.TodoJson;
+import fun.ginz.todo.entity.Todo;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Acknowledges inserts and updates as soon as they are in a buffer of this instance and writes
+ * them to the delegate in batches, once {@code maxBatch} todos are waiting or {@code interval}
+ * milliseconds after the first one. Writes to a todo that is still waiting fold into one, so a hot
+ * todo costs one write per flush however often it changes. New todos go out whole with
+ * {@link TodoService#insertAll(List)}, changed ones as merged patches with
+ * {@link TodoService#updateAll(List)}; on Redis each is one pipelined script call per shard.
+ * <p>
+ * Point reads see the buffered todos, and listings, changes and the version wait for the buffer
+ * to be written, so a client always reads its own writes. Flushes and deletes reach the delegate one
+ * after the other, in the order they were made. With {@code maxBuffered} todos waiting, writes to
+ * further todos fail with a {@link RejectedExecutionException} until a flush makes room, and a
+ * flush that fails goes back into the buffer to be retried.
+ * <p>
+ * The buffer is kept in memory only, so the writes of the last interval are lost if the process
+ * dies, and a buffered todo has no version until it is written. Meant to be used from a single context.
+ */
+public class WriteBehindTodoService extends ForwardingTodoService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriteBehindTodoService.class);
+
+    private final Vertx vertx;
+    private final long interval;
+    private final int maxBatch;
+    private final int maxBuffered;
+
+    private Map<String, Pending> buffer = new LinkedHashMap<>();
+    private final Map<String, Pending> flushing = new HashMap<>();
+    private final Map<String, List<Waiter>> loading = new HashMap<>();
+    private final Map<String, Integer> deleting = new HashMap<>();
+    private int clearing;
+    private Future<Void> tail = Future.succeededFuture();
+    private long timer = -1;
+    private boolean flushQueued;
+
+    private long writes;
+    private long coalesced;
+    private long flushes;
+    private long flushed;
+    private long failedFlushes;
+    /** Flushes failed since the last one that went through, only the first of a run is logged. */
+    private long failingFlushes;
+    private long rejected;
+
+    public WriteBehindTodoService(Vertx vertx, TodoService delegate, long interval, int maxBatch, int maxBuffered) {
+        super(delegate);
+        this.vertx = vertx;
+        this.interval = interval;
+        this.maxBatch = maxBatch;
+        this.maxBuffered = maxBuffered;
+    }
+
+    @Override
+    public Future<Todo> insert(Todo todo) {
+        return insertAll(Collections.singletonList(todo)).map(todo);
+    }
+
+    @Override
+    public Future<List<Todo>> insertAll(List<Todo> todos) {
+        if (full(todos.size())) {
+            return rejected();
+        }
+        for (Todo todo : todos) {
+            buffer(String.valueOf(todo.getId()), new Pending(new Todo(todo), null));
+        }
+        return Future.succeededFuture(todos);
+    }
+
+    @Override
+    public Future<Todo> update(String todoID, Todo newTodo) {
+        if (isUnknown(todoID) && full(1)) {
+            return rejected();
+        }
+        return patch(todoID, newTodo);
+    }
+
+    @Override
+    public Future<List<Todo>> updateAll(List<Todo> patches) {
+        int unknown = 0;
+        for (Todo patch : patches) {
+            unknown += isUnknown(String.valueOf(patch.getId())) ? 1 : 0;
+        }
+        if (unknown > 0 && full(unknown)) {
+            return rejected();
+        }
+        List<Future> updated = new ArrayList<>(patches.size());
+        for (Todo patch : patches) {
+            updated.add(patch(String.valueOf(patch.getId()), patch));
+        }
+        return CompositeFuture.all(updated).map(all -> {
+            List<Todo> merged = new ArrayList<>(all.size());
+            for (int i = 0; i < all.size(); i++) {
+                merged.add(all.resultAt(i));
+            }
+            return merged;
+        });
+    }
+
+    private Future<Todo> patch(String todoID, Todo newTodo) {
+        Pending pending = pending(todoID);
+        if (pending != null) {
+            return Future.succeededFuture(apply(todoID, pending.view, newTodo));
+        }
+        if (isHidden(todoID)) {
+            return Future.succeededFuture(null);
+        }
+
+        // a patch needs the todo it applies to, later ones for the same todo wait for that read
+        Future<Todo> future = Future.future();
+        List<Waiter> waiters = loading.get(todoID);
+        if (waiters != null) {
+            waiters.add(new Waiter(newTodo, future));
+            return future;
+        }
+        List<Waiter> loaded = new ArrayList<>(1);
+        loaded.add(new Waiter(newTodo, future));
+        loading.put(todoID, loaded);
+        delegate.getCertain(todoID).setHandler(res -> {
+            // a delete or clear since the read started drops the list, and the todo with it
+            boolean current = loading.remove(todoID, loaded);
+            for (Waiter waiter : loaded) {
+                if (res.failed()) {
+                    waiter.future.fail(res.cause());
+                    continue;
+                }
+                Pending inserted = pending(todoID);
+                Todo base = inserted != null ? inserted.view : current ? res.result().orElse(null) : null;
+                waiter.future.complete(base == null ? null : apply(todoID, base, waiter.patch));
+            }
+        });
+        return future;
+    }
+
+    private Todo apply(String todoID, Todo base, Todo newTodo) {
+        Todo view = base.merge(newTodo);
+        // the version of the stored todo does not describe the merged one
+        view.setVersion(0);
+        Todo patch = new Todo(newTodo);
+        patch.setId(view.getId());
+        buffer(todoID, new Pending(view, patch));
+        return new Todo(view);
+    }
+
+    private void buffer(String todoID, Pending pending) {
+        writes++;
+        Pending earlier = buffer.get(todoID);
+        if (earlier != null) {
+            coalesced++;
+            pending = earlier.then(pending);
+        }
+        buffer.put(todoID, pending);
+        if (buffer.size() >= maxBatch) {
+            flush();
+        } else {
+            schedule();
+        }
+    }
+
+    private void schedule() {
+        if (timer < 0 && !flushQueued && !buffer.isEmpty()) {
+            timer = vertx.setTimer(interval, id -> {
+                timer = -1;
+                flush();
+            });
+        }
+    }
+
+    /** Writes the buffer out; the future completes once that and every earlier write has been tried. */
+    public Future<Void> flush() {
+        if (timer >= 0) {
+            vertx.cancelTimer(timer);
+            timer = -1;
+        }
+        if (!flushQueued && !buffer.isEmpty()) {
+            flushQueued = true;
+            sequence(this::write);
+        }
+        return sequence(Future::succeededFuture);
+    }
+
+    private Future<Void> write() {
+        // taken only now, so that whatever came in while the previous write was out goes along
+        flushQueued = false;
+        if (buffer.isEmpty()) {
+            return Future.succeededFuture();
+        }
+        Map<String, Pending> batch = buffer;
+        buffer = new LinkedHashMap<>();
+        flushing.putAll(batch);
+        flushes++;
+
+        List<Todo> inserts = new ArrayList<>();
+        List<Todo> patches = new ArrayList<>();
+        batch.forEach((todoID, pending) -> {
+            if (pending.patch == null) {
+                inserts.add(new Todo(pending.view));
+            } else {
+                patches.add(pending.patch);
+            }
+        });
+        Future<Void> written = Future.future();
+        CompositeFuture.all(
+                inserts.isEmpty() ? Future.succeededFuture() : delegate.insertAll(inserts),
+                patches.isEmpty() ? Future.succeededFuture() : delegate.updateAll(patches)).setHandler(res -> {
+            batch.forEach((todoID, pending) -> {
+                // deleted meanwhile if it is no longer flushing, in which case it must not come back
+                if (flushing.remove(todoID, pending) && res.failed()) {
+                    Pending later = buffer.get(todoID);
+                    buffer.put(todoID, later == null ? pending : pending.then(later));
+                }
+            });
+            if (res.succeeded()) {
+                flushed += batch.size();
+                if (failingFlushes > 0) {
+                    LOGGER.info("flushing the write-behind buffer works again after " + failingFlushes + " failed flushes");
+                    failingFlushes = 0;
+                }
+                written.complete();
+            } else {
+                failedFlushes++;
+                if (failingFlushes++ == 0) {
+                    LOGGER.warn("flushing the write-behind buffer failed, retrying until it goes through", res.cause());
+                }
+                schedule();
+                written.fail(res.cause());
+            }
+        });
+        return written;
+    }
+
+    /** Runs {@code step} once everything sequenced before it has completed, whichever way. */
+    private <T> Future<T> sequence(Supplier<Future<T>> step) {
+        Future<T> result = Future.future();
+        Future<Void> done = Future.future();
+        Future<Void> previous = tail;
+        tail = done;
+        previous.setHandler(v -> step.get().setHandler(res -> {
+            done.complete();
+            result.handle(res);
+        }));
+        return result;
+    }
+
+    private <T> Future<T> afterFlush(Supplier<Future<T>> read) {
+        if (buffer.isEmpty() && tail.isComplete()) {
+            return read.get();
+        }
+        return flush().compose(v -> read.get());
+    }
+
+    private Pending pending(String todoID) {
+        Pending pending = buffer.get(todoID);
+        return pending != null ? pending : flushing.get(todoID);
+    }
+
+    private boolean isHidden(String todoID) {
+        return clearing > 0 || deleting.containsKey(todoID);
+    }
+
+    private boolean isUnknown(String todoID) {
+        return pending(todoID) == null && !loading.containsKey(todoID);
+    }
+
+    private boolean full(int more) {
+        if (buffer.size() + flushing.size() + loading.size() + more <= maxBuffered) {
+            return false;
+        }
+        rejected++;
+        return true;
+    }
+
+    private static <T> Future<T> rejected() {
+        return Future.failedFuture(new RejectedExecutionException("write-behind buffer is full"));
+    }
+
+    @Override
+    public Future<Optional<Todo>> getCertain(String todoID) {
+        Pending pending = pending(todoID);
+        if (pending != null) {
+            return Future.succeededFuture(Optional.of(new Todo(pending.view)));
+        }
+        if (isHidden(todoID)) {
+            return Future.succeededFuture(Optional.empty());
+        }
+        return delegate.getCertain(todoID);
+    }
+
+    @Override
+    public Future<Optional<String>> getCertainRaw(String todoID) {
+        Pending pending = pending(todoID);
+        if (pending != null) {
+            return Future.succeededFuture(Optional.of(TodoJson.encode(pending.view, false).toString()));
+        }
+        if (isHidden(todoID)) {
+            return Future.succeededFuture(Optional.empty());
+        }
+        return delegate.getCertainRaw(todoID);
+    }
+
+    @Override
+    public Future<List<String>> getManyRaw(List<String> todoIDs) {
+        String[] docs = new String[todoIDs.size()];
+        List<String> stored = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        for (int i = 0; i < todoIDs.size(); i++) {
+            String todoID = todoIDs.get(i);
+            Pending pending = pending(todoID);
+            if (pending != null) {
+                docs[i] = TodoJson.encode(pending.view, false).toString();
+            } else if (!isHidden(todoID)) {
+                stored.add(todoID);
+                positions.add(i);
+            }
+        }
+        if (stored.isEmpty()) {
+            return Future.succeededFuture(Arrays.asList(docs));
+        }
+        return delegate.getManyRaw(stored).map(found -> {
+            for (int i = 0; i < found.size(); i++) {
+                docs[positions.get(i)] = found.get(i);
+            }
+            return Arrays.asList(docs);
+        });
+    }
+
+    @Override
+    public Future<List<Todo>> getAll() {
+        return afterFlush(delegate::getAll);
+    }
+
+    @Override
+    public Future<Page<Todo>> scan(String cursor, int count) {
+        return afterFlush(() -> delegate.scan(cursor, count));
+    }
+
+    @Override
+    public Future<Page<String>> scanRaw(String cursor, int count) {
+        return afterFlush(() -> delegate.scanRaw(cursor, count));
+    }
+
+    @Override
+    public Future<Page<Todo>> query(TodoQuery query) {
+        return afterFlush(() -> delegate.query(query));
+    }
+
+    @Override
+    public Future<Page<String>> queryRaw(TodoQuery query) {
+        return afterFlush(() -> delegate.queryRaw(query));
+    }
+
+    @Override
+    public Future<Long> version() {
+        return afterFlush(delegate::version);
+    }
+
+    @Override
+    public Future<Changes> changes(String since, int limit) {
+        return afterFlush(() -> delegate.changes(since, limit));
+    }
+
+    @Override
+    public Future<Void> delete(String todoID) {
+        return deleteMany(Collections.singletonList(todoID));
+    }
+
+    @Override
+    public Future<Void> deleteMany(List<String> todoIDs) {
+        for (String todoID : todoIDs) {
+            buffer.remove(todoID);
+            flushing.remove(todoID);
+            loading.remove(todoID);
+            deleting.merge(todoID, 1, Integer::sum);
+        }
+        Future<Void> deleted = Future.future();
+        sequence(() -> delegate.deleteMany(todoIDs)).setHandler(res -> {
+            for (String todoID : todoIDs) {
+                deleting.computeIfPresent(todoID, (id, count) -> count == 1 ? null : count - 1);
+            }
+            deleted.handle(res);
+        });
+        return deleted;
+    }
+
+    @Override
+    public Future<Void> deleteAll() {
+        buffer.clear();
+        flushing.clear();
+        loading.clear();
+        clearing++;
+        Future<Void> cleared = Future.future();
+        sequence(delegate::deleteAll).setHandler(res -> {
+            clearing--;
+            cleared.handle(res);
+        });
+        return cleared;
+    }
+
+    public JsonObject stats() {
+        return new JsonObject()
+                .put("buffered", buffer.size())
+                .put("flushing", flushing.size())
+                .put("writes", writes)
+                .put("coalesced", coalesced)
+                .put("flushes", flushes)
+                .put("flushed", flushed)
+                .put("failed_flushes", failedFlushes)
+                .put("rejected", rejected);
+    }
+
+    /** A buffered write: the todo as reads see it, and what to send, the fields to change or the whole todo if null. */
+    private static final class Pending {
+        private final Todo view;
+        private final Todo patch;
+
+        private Pending(Todo view, Todo patch) {
+            this.view = view;
+            this.patch = patch;
+        }
+
+        /** This write followed by {@code later}, as one. */
+        private Pending then(Pending later) {
+            if (later.patch == null) {
+                return later;
+            }
+            if (patch == null) {
+                return new Pending(later.view, null);
+            }
+            return new Pending(later.view, patch.merge(later.patch));
+        }
+    }
+
+    private static final class Waiter {
+        private final Todo patch;
+        private final Future<Todo> future;
+
+        private Waiter(Todo patch, Future<Todo> future) {
+            this.patch = patch;
+            this.future = future;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package fun.ginz.todo.service.proxy;
+
+import fun.ginz.todo.service.IdAllocator;
+import fun.ginz.todo.service.IdTakenException;
+import io.vertx.core.Future;
+import io.vertx.serviceproxy.ServiceException;
+
+/**
+ * {@link IdAllocator} of the store behind a {@link TodoStoreService}.
+ */
+public class ProxiedIdAllocator implements IdAllocator {
+
+    private final TodoStoreService store;
+
+    public ProxiedIdAllocator(TodoStoreService store) {
+        this.store = store;
+    }
+
+    @Override
+    public Future<Integer> next() {
+        return ProxiedTodoService.call(store::nextId);
+    }
+
+    @Override
+    public Future<Void> observe(int id) {
+        Future<Void> observed = Future.future();
+        store.observeId(id, res -> {
+            if (res.failed() && res.cause() instanceof ServiceException
+                    && ((ServiceException) res.cause()).failureCode() == TodoStoreService.ID_TAKEN) {
+                observed.fail(new IdTakenException(id));
+            } else {
+                observed.handle(res);
+            }
+        });
+        return observed;
+    }
+}
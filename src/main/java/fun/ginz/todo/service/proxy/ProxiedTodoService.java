@@ -0,0 +1,183 @@
+package fun.ginz.todo.service.proxy;
+
+import fun.ginz.todo.entity.Todo;
+import fun.ginz.todo.service.Changes;
+import fun.ginz.todo.service.Page;
+import fun.ginz.todo.service.TodoQuery;
+import fun.ginz.todo.service.TodoService;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonObject;
+import io.vertx.serviceproxy.ServiceException;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * {@link TodoService} calling a {@link TodoStoreService} over the event bus. Single operations go
+ * out as batches of one; put a {@link fun.ginz.todo.service.CoalescingTodoService} in front to
+ * merge concurrent point reads into one message.
+ */
+public class ProxiedTodoService implements TodoService {
+
+    private final TodoStoreService store;
+
+    public ProxiedTodoService(TodoStoreService store) {
+        this.store = store;
+    }
+
+    static <T> Future<T> call(Consumer<Handler<AsyncResult<T>>> call) {
+        Future<T> future = Future.future();
+        call.accept(future);
+        return future;
+    }
+
+    private static Future<Page<String>> page(Future<JsonObject> reply) {
+        return decode(reply, json -> {
+            List<String> items = json.getJsonArray("items").stream()
+                    .map(String.class::cast)
+                    .collect(Collectors.toList());
+            return new Page<>(items, json.getString("cursor"));
+        });
+    }
+
+    private static <T> Future<T> decode(Future<JsonObject> reply, Function<JsonObject, T> decoder) {
+        Future<T> decoded = Future.future();
+        reply.setHandler(res -> {
+            if (res.succeeded()) {
+                decoded.complete(decoder.apply(res.result()));
+            } else if (res.cause() instanceof ServiceException
+                    && ((ServiceException) res.cause()).failureCode() == TodoStoreService.BAD_CURSOR) {
+                // callers tell a bad cursor from an unavailable store by this
+                decoded.fail(new NumberFormatException(res.cause().getMessage()));
+            } else {
+                decoded.fail(res.cause());
+            }
+        });
+        return decoded;
+    }
+
+    @Override
+    public Future<Boolean> initData() {
+        return call(store::initData);
+    }
+
+    @Override
+    public Future<Todo> insert(Todo todo) {
+        return insertAll(Collections.singletonList(todo)).map(inserted -> inserted.get(0));
+    }
+
+    @Override
+    public Future<List<Todo>> insertAll(List<Todo> todos) {
+        return call(handler -> store.insertAll(todos, handler));
+    }
+
+    @Override
+    public Future<List<Todo>> getAll() {
+        return call(store::getAll);
+    }
+
+    @Override
+    public Future<Page<Todo>> scan(String cursor, int count) {
+        return scanRaw(cursor, count).map(page -> new Page<>(
+                page.getItems().stream().map(Todo::new).collect(Collectors.toList()),
+                page.getCursor()));
+    }
+
+    @Override
+    public Future<Page<String>> scanRaw(String cursor, int count) {
+        return page(call(handler -> store.scanRaw(cursor, count, handler)));
+    }
+
+    @Override
+    public Future<Page<Todo>> query(TodoQuery query) {
+        return queryRaw(query).map(page -> new Page<>(
+                page.getItems().stream().map(Todo::new).collect(Collectors.toList()),
+                page.getCursor()));
+    }
+
+    @Override
+    public Future<Page<String>> queryRaw(TodoQuery query) {
+        JsonObject json = new JsonObject()
+                .put("completed", query.getCompleted())
+                .put("descending", query.isDescending())
+                .put("cursor", query.getCursor())
+                .put("limit", query.getLimit());
+        return page(call(handler -> store.queryRaw(json, handler)));
+    }
+
+    @Override
+    public Future<Optional<Todo>> getCertain(String todoID) {
+        return getCertainRaw(todoID).map(raw -> raw.map(Todo::new));
+    }
+
+    @Override
+    public Future<Optional<String>> getCertainRaw(String todoID) {
+        return getManyRaw(Collections.singletonList(todoID)).map(docs -> Optional.ofNullable(docs.get(0)));
+    }
+
+    @Override
+    public Future<List<String>> getManyRaw(List<String> todoIDs) {
+        return call(handler -> store.getManyRaw(todoIDs, handler));
+    }
+
+    @Override
+    public Future<Todo> update(String todoID, Todo newTodo) {
+        Todo patch = new Todo(newTodo);
+        try {
+            patch.setId(Integer.parseInt(todoID));
+        } catch (NumberFormatException e) {
+            // never stored, so there is nothing to update
+            return Future.succeededFuture(null);
+        }
+        return updateAll(Collections.singletonList(patch)).map(merged -> merged.get(0));
+    }
+
+    @Override
+    public Future<List<Todo>> updateAll(List<Todo> patches) {
+        List<JsonObject> json = patches.stream()
+                .map(patch -> patch.toPatch().put("id", patch.getId()))
+                .collect(Collectors.toList());
+        return call(handler -> store.updateAll(json, handler));
+    }
+
+    @Override
+    public Future<Void> delete(String todoID) {
+        return deleteMany(Collections.singletonList(todoID));
+    }
+
+    @Override
+    public Future<Void> deleteMany(List<String> todoIDs) {
+        return call(handler -> store.deleteMany(todoIDs, handler));
+    }
+
+    @Override
+    public Future<Void> deleteAll() {
+        return call(store::deleteAll);
+    }
+
+    @Override
+    public Future<Long> version() {
+        return call(store::version);
+    }
+
+    @Override
+    public Future<Changes> changes(String since, int limit) {
+        return decode(call(handler -> store.changes(since, limit, handler)), json -> {
+            List<String> items = json.getJsonArray("items").stream()
+                    .map(String.class::cast)
+                    .collect(Collectors.toList());
+            List<Integer> deleted = json.getJsonArray("deleted").stream()
+                    // over the wire the ids are whatever number type the decoder picked
+                    .map(id -> ((Number) id).intValue())
+                    .collect(Collectors.toList());
+            String version = json.getString("version");
+            return version == null ? Changes.expired() : new Changes(items, deleted, version, json.getBoolean("last"));
+        });
+    }
+}
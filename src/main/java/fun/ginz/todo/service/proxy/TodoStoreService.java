@@ -0,0 +1,65 @@
+package fun.ginz.todo.service.proxy;
+
+import fun.ginz.todo.entity.Todo;
+import io.vertx.codegen.annotations.ProxyGen;
+import io.vertx.codegen.annotations.VertxGen;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.json.JsonObject;
+
+import java.util.List;
+
+/**
+ * {@link fun.ginz.todo.service.TodoService} and {@link fun.ginz.todo.service.IdAllocator} as an
+ * event bus service, so that storage can run in its own verticles, on other nodes of a cluster.
+ * Only the batch operations are exposed, the single ones are batches of one. Pages travel as
+ * {@code {"items": [...], "cursor": "..."}} and queries as the fields of
+ * {@link fun.ginz.todo.service.TodoQuery}. The raw documents are JSON strings, missing ones null.
+ * Changes travel as {@code {"items": [...], "deleted": [...], "version": "...", "last": true}},
+ * the version null when expired. Patches travel as {@link Todo#toPatch()} plus the id, as the
+ * {@link Todo} converter would fill in the fields a patch leaves out.
+ */
+@ProxyGen
+@VertxGen
+public interface TodoStoreService {
+
+    String ADDRESS = "fun.ginz.todo.store";
+
+    /** Failure code of a cursor the backend cannot parse. */
+    int BAD_CURSOR = 400;
+
+    /** Failure code of an id a client picked that may have been handed out already. */
+    int ID_TAKEN = 409;
+
+    static TodoStoreService createProxy(Vertx vertx, String address, DeliveryOptions options) {
+        return new TodoStoreServiceVertxEBProxy(vertx, address, options);
+    }
+
+    void initData(Handler<AsyncResult<Boolean>> handler);
+
+    void insertAll(List<Todo> todos, Handler<AsyncResult<List<Todo>>> handler);
+
+    void getAll(Handler<AsyncResult<List<Todo>>> handler);
+
+    void scanRaw(String cursor, int count, Handler<AsyncResult<JsonObject>> handler);
+
+    void queryRaw(JsonObject query, Handler<AsyncResult<JsonObject>> handler);
+
+    void getManyRaw(List<String> todoIDs, Handler<AsyncResult<List<String>>> handler);
+
+    void updateAll(List<JsonObject> patches, Handler<AsyncResult<List<Todo>>> handler);
+
+    void deleteMany(List<String> todoIDs, Handler<AsyncResult<Void>> handler);
+
+    void deleteAll(Handler<AsyncResult<Void>> handler);
+
+    void version(Handler<AsyncResult<Long>> handler);
+
+    void changes(String since, int limit, Handler<AsyncResult<JsonObject>> handler);
+
+    void nextId(Handler<AsyncResult<Integer>> handler);
+
+    void observeId(int id, Handler<AsyncResult<Void>> handler);
+}
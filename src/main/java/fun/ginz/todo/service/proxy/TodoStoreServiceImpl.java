@@ -0,0 +1,125 @@
+package fun.ginz.todo.service.proxy;
+
+import fun.ginz.todo.entity.Todo;
+import fun.ginz.todo.service.Changes;
+import fun.ginz.todo.service.IdAllocator;
+import fun.ginz.todo.service.IdTakenException;
+import fun.ginz.todo.service.Page;
+import fun.ginz.todo.service.TodoQuery;
+import fun.ginz.todo.service.TodoService;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.serviceproxy.ServiceException;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Serves a local {@link TodoService} and {@link IdAllocator} as a {@link TodoStoreService}.
+ */
+public class TodoStoreServiceImpl implements TodoStoreService {
+
+    private final TodoService service;
+    private final IdAllocator idAllocator;
+
+    public TodoStoreServiceImpl(TodoService service, IdAllocator idAllocator) {
+        this.service = service;
+        this.idAllocator = idAllocator;
+    }
+
+    private static <T> void reply(Future<T> result, Handler<AsyncResult<T>> handler) {
+        result.setHandler(res -> {
+            if (res.failed() && res.cause() instanceof NumberFormatException) {
+                handler.handle(ServiceException.fail(BAD_CURSOR, res.cause().getMessage()));
+            } else if (res.failed() && res.cause() instanceof IdTakenException) {
+                handler.handle(ServiceException.fail(ID_TAKEN, res.cause().getMessage()));
+            } else {
+                handler.handle(res);
+            }
+        });
+    }
+
+    private static JsonObject toJson(Page<String> page) {
+        return new JsonObject()
+                .put("items", new JsonArray(page.getItems()))
+                .put("cursor", page.getCursor());
+    }
+
+    private static JsonObject toJson(Changes changes) {
+        return new JsonObject()
+                .put("items", new JsonArray(changes.getItems()))
+                .put("deleted", new JsonArray(changes.getDeleted()))
+                .put("version", changes.getVersion())
+                .put("last", changes.isLast());
+    }
+
+    @Override
+    public void initData(Handler<AsyncResult<Boolean>> handler) {
+        reply(service.initData(), handler);
+    }
+
+    @Override
+    public void insertAll(List<Todo> todos, Handler<AsyncResult<List<Todo>>> handler) {
+        reply(service.insertAll(todos), handler);
+    }
+
+    @Override
+    public void getAll(Handler<AsyncResult<List<Todo>>> handler) {
+        reply(service.getAll(), handler);
+    }
+
+    @Override
+    public void scanRaw(String cursor, int count, Handler<AsyncResult<JsonObject>> handler) {
+        reply(service.scanRaw(cursor, count).map(TodoStoreServiceImpl::toJson), handler);
+    }
+
+    @Override
+    public void queryRaw(JsonObject query, Handler<AsyncResult<JsonObject>> handler) {
+        TodoQuery todoQuery = new TodoQuery(query.getBoolean("completed"), query.getBoolean("descending", false),
+                query.getString("cursor", Page.FIRST), query.getInteger("limit"));
+        reply(service.queryRaw(todoQuery).map(TodoStoreServiceImpl::toJson), handler);
+    }
+
+    @Override
+    public void getManyRaw(List<String> todoIDs, Handler<AsyncResult<List<String>>> handler) {
+        reply(service.getManyRaw(todoIDs), handler);
+    }
+
+    @Override
+    public void updateAll(List<JsonObject> patches, Handler<AsyncResult<List<Todo>>> handler) {
+        reply(service.updateAll(patches.stream().map(Todo::new).collect(Collectors.toList())), handler);
+    }
+
+    @Override
+    public void deleteMany(List<String> todoIDs, Handler<AsyncResult<Void>> handler) {
+        reply(service.deleteMany(todoIDs), handler);
+    }
+
+    @Override
+    public void deleteAll(Handler<AsyncResult<Void>> handler) {
+        reply(service.deleteAll(), handler);
+    }
+
+    @Override
+    public void version(Handler<AsyncResult<Long>> handler) {
+        reply(service.version(), handler);
+    }
+
+    @Override
+    public void changes(String since, int limit, Handler<AsyncResult<JsonObject>> handler) {
+        reply(service.changes(since, limit).map(TodoStoreServiceImpl::toJson), handler);
+    }
+
+    @Override
+    public void nextId(Handler<AsyncResult<Integer>> handler) {
+        reply(idAllocator.next(), handler);
+    }
+
+    @Override
+    public void observeId(int id, Handler<AsyncResult<Void>> handler) {
+        reply(idAllocator.observe(id), handler);
+    }
+}
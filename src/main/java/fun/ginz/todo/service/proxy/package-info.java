@@ -0,0 +1,4 @@
+@ModuleGen(name = "ginz-todo-service", groupPackage = "fun.ginz.todo.service")
+package fun.ginz.todo.service.proxy;
+
+import io.vertx.codegen.annotations.ModuleGen;
@@ -0,0 +1,120 @@
+package fun.ginz.todo.verticles;
+
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+
+/**
+ * Caps the requests one verticle instance has in flight, and sheds the rest right away with a
+ * {@code status} (503 by default) and Retry-After instead of queueing them behind a slow store.
+ * <p>
+ * Between {@code minInFlight}, where it starts, and {@code maxInFlight} the limit adapts to
+ * latency in the manner of a gradient limiter: every window of completed requests compares its
+ * average latency against the lowest one seen, which only creeps up slowly. Latency rising above
+ * that baseline means requests are queueing in Redis (or wherever the store is), so the limit
+ * shrinks in proportion; while it stays level the limit grows by its square root, but only when
+ * the traffic actually used it. Nearly all of a request's time is its store round trip, so
+ * request latency stands in for Redis latency.
+ */
+class AdmissionControl {
+
+    private static final int WINDOW = 50;
+    private static final long WINDOW_NANOS = 250_000_000L;
+    private static final double TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+    private static final double DRIFT = 0.01;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int status;
+    private final String retryAfter;
+
+    private double limit;
+    private int inFlight;
+    private double baseline;
+
+    private long windowStart = System.nanoTime();
+    private long windowSum;
+    private int windowCount;
+    private int windowPeak;
+
+    private long admitted;
+    private long rejected;
+
+    AdmissionControl(int minInFlight, int maxInFlight, boolean adaptive, int status, long retryAfterSeconds) {
+        this.minLimit = adaptive ? Math.min(minInFlight, maxInFlight) : maxInFlight;
+        this.maxLimit = maxInFlight;
+        // starting low measures the baseline before any queue builds up, even when a new
+        // instance is thrown into a spike
+        this.limit = minLimit;
+        this.status = status;
+        this.retryAfter = String.valueOf(retryAfterSeconds);
+    }
+
+    void handle(RoutingContext context) {
+        if (inFlight >= (int) limit) {
+            rejected++;
+            context.response()
+                    .setStatusCode(status)
+                    .putHeader("Retry-After", retryAfter)
+                    .end();
+            return;
+        }
+        admitted++;
+        inFlight++;
+        windowPeak = Math.max(windowPeak, inFlight);
+
+        long start = System.nanoTime();
+        boolean[] released = new boolean[1];
+        HttpServerResponse response = context.response();
+        // the metrics of the route own the end handler, these two cover an ended and a dropped response
+        context.addBodyEndHandler(v -> {
+            if (!released[0]) {
+                released[0] = true;
+                inFlight--;
+                sample(System.nanoTime() - start);
+            }
+        });
+        response.closeHandler(v -> {
+            if (!released[0]) {
+                released[0] = true;
+                inFlight--;
+            }
+        });
+        context.next();
+    }
+
+    private void sample(long nanos) {
+        windowSum += nanos;
+        windowCount++;
+        long now = System.nanoTime();
+        if (windowCount < WINDOW && now - windowStart < WINDOW_NANOS) {
+            return;
+        }
+
+        double latency = (double) windowSum / windowCount;
+        // the drift lets the baseline follow a store that got slower for good, say after a failover
+        baseline = baseline == 0 || latency < baseline ? latency : baseline + (latency - baseline) * DRIFT;
+
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * baseline / latency));
+        double target = limit * gradient + Math.sqrt(limit);
+        // a limit the traffic never came close to says nothing about what the store can take
+        if (target <= limit || windowPeak >= limit / 2) {
+            limit = limit * (1 - SMOOTHING) + target * SMOOTHING;
+            limit = Math.max(minLimit, Math.min(maxLimit, limit));
+        }
+
+        windowStart = now;
+        windowSum = 0;
+        windowCount = 0;
+        windowPeak = inFlight;
+    }
+
+    JsonObject stats() {
+        return new JsonObject()
+                .put("limit", (int) limit)
+                .put("in_flight", inFlight)
+                .put("admitted", admitted)
+                .put("rejected", rejected);
+    }
+}
@@ -0,0 +1,199 @@
+package fun.ginz.todo.verticles;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.http.ServerWebSocket;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Change feed of one verticle instance, pushing the events of
+ * {@link fun.ginz.todo.service.PublishingTodoService} to clients over server-sent events, or over
+ * a WebSocket when the request asks for an upgrade. One event bus consumer serves every connection
+ * of the instance and is only registered while any is open.
+ * <p>
+ * Each connection may have up to {@code bufferSize} bytes of events queued. A client that falls
+ * further behind is disconnected rather than buffered for, it has to reconnect and refetch the list.
+ */
+class ChangeFeed {
+
+    private static final String CONNECTED = ": connected\n\n";
+    private static final String HEARTBEAT = ":\n\n";
+
+    private final Vertx vertx;
+    private final String address;
+    private final int bufferSize;
+    private final long heartbeat;
+    private final Set<Subscriber> subscribers = new LinkedHashSet<>();
+
+    private MessageConsumer<String> consumer;
+    private long timer;
+
+    private long events;
+    private long dropped;
+
+    ChangeFeed(Vertx vertx, String address, int bufferSize, long heartbeat) {
+        this.vertx = vertx;
+        this.address = address;
+        this.bufferSize = bufferSize;
+        this.heartbeat = heartbeat;
+    }
+
+    void handle(RoutingContext routingContext) {
+        HttpServerRequest request = routingContext.request();
+        Subscriber subscriber;
+        if ("websocket".equalsIgnoreCase(request.getHeader("Upgrade"))) {
+            subscriber = new WebSocketSubscriber(request.upgrade());
+        } else {
+            subscriber = new EventStreamSubscriber(routingContext.response());
+        }
+        subscriber.closeHandler(() -> remove(subscriber));
+        add(subscriber);
+    }
+
+    private void add(Subscriber subscriber) {
+        subscribers.add(subscriber);
+        if (consumer == null) {
+            consumer = vertx.eventBus().consumer(address, this::dispatch);
+            timer = vertx.setPeriodic(heartbeat, id -> deliver(Subscriber::ping));
+        }
+    }
+
+    private void remove(Subscriber subscriber) {
+        subscribers.remove(subscriber);
+        if (subscribers.isEmpty() && consumer != null) {
+            consumer.unregister();
+            consumer = null;
+            vertx.cancelTimer(timer);
+        }
+    }
+
+    private void dispatch(Message<String> message) {
+        events++;
+        String type = message.headers().get("type");
+        String event = message.body();
+        deliver(subscriber -> subscriber.send(type, event));
+    }
+
+    private void deliver(Consumer<Subscriber> write) {
+        List<Subscriber> slow = new ArrayList<>();
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.full()) {
+                slow.add(subscriber);
+            } else {
+                write.accept(subscriber);
+            }
+        }
+        // closing may call back into remove, so only after the walk
+        for (Subscriber subscriber : slow) {
+            dropped++;
+            remove(subscriber);
+            subscriber.close();
+        }
+    }
+
+    JsonObject stats() {
+        return new JsonObject()
+                .put("connections", subscribers.size())
+                .put("events", events)
+                .put("dropped", dropped);
+    }
+
+    private interface Subscriber {
+
+        void closeHandler(Runnable handler);
+
+        boolean full();
+
+        void send(String type, String event);
+
+        void ping();
+
+        void close();
+    }
+
+    private class EventStreamSubscriber implements Subscriber {
+
+        private final HttpServerResponse response;
+
+        EventStreamSubscriber(HttpServerResponse response) {
+            this.response = response;
+            response.setChunked(true)
+                    .putHeader("Content-Type", "text/event-stream")
+                    .putHeader("Cache-Control", "no-cache")
+                    .setWriteQueueMaxSize(bufferSize)
+                    .write(CONNECTED);
+        }
+
+        @Override
+        public void closeHandler(Runnable handler) {
+            response.closeHandler(v -> handler.run());
+        }
+
+        @Override
+        public boolean full() {
+            return response.writeQueueFull();
+        }
+
+        @Override
+        public void send(String type, String event) {
+            // events are compact JSON, so they fit on one data line
+            response.write("event: " + type + "\ndata: " + event + "\n\n");
+        }
+
+        @Override
+        public void ping() {
+            response.write(HEARTBEAT);
+        }
+
+        @Override
+        public void close() {
+            response.close();
+        }
+    }
+
+    private class WebSocketSubscriber implements Subscriber {
+
+        private final ServerWebSocket socket;
+
+        WebSocketSubscriber(ServerWebSocket socket) {
+            this.socket = socket;
+            socket.setWriteQueueMaxSize(bufferSize);
+        }
+
+        @Override
+        public void closeHandler(Runnable handler) {
+            socket.closeHandler(v -> handler.run());
+        }
+
+        @Override
+        public boolean full() {
+            return socket.writeQueueFull();
+        }
+
+        @Override
+        public void send(String type, String event) {
+            socket.writeTextMessage(event);
+        }
+
+        @Override
+        public void ping() {
+            socket.writePing(Buffer.buffer());
+        }
+
+        @Override
+        public void close() {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package fun.ginz.todo.verticles;
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Deploys one {@link TodoVerticle} per core (or {@code http.instances}). The instances share the
+ * HTTP port, and Vert.x spreads the connections over their event loops. Each instance owns its
+ * own Redis connections and id allocator, so no event loop ever waits for another one.
+ * <p>
+ * With {@code store.instances} set, that many {@link TodoStoreVerticle}s (workers unless
+ * {@code store.worker} is false) own the backend instead, and the HTTP verticles reach them over
+ * the event bus. {@code http.instances} 0 makes a storage-only node for a cluster.
+ * <p>
+ * {@code startup.exit} closes Vert.x again once everything is up, which is how the build records
+ * the classes a start loads for the AppCDS archive.
+ */
+public class MainVerticle extends AbstractVerticle {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MainVerticle.class);
+
+    @Override
+    public void start(Future<Void> startFuture) throws Exception {
+        int instances = config().getInteger("http.instances", Runtime.getRuntime().availableProcessors());
+        int stores = config().getInteger("store.instances", 0);
+
+        JsonObject httpConfig = config();
+        Future<String> storesDeployed = Future.succeededFuture();
+        if (stores > 0) {
+            storesDeployed = Future.future();
+            DeploymentOptions storeOptions = new DeploymentOptions()
+                    .setConfig(config())
+                    .setInstances(stores)
+                    .setWorker(config().getBoolean("store.worker", true));
+            vertx.deployVerticle(TodoStoreVerticle.class.getName(), storeOptions, storesDeployed);
+            httpConfig = config().copy().put("service.type", "proxy");
+        }
+
+        // the front ends seed the demo data through the stores, so those have to be listening first
+        DeploymentOptions options = new DeploymentOptions()
+                .setConfig(httpConfig)
+                .setInstances(instances);
+        storesDeployed.compose(id -> {
+            Future<String> deployed = Future.future();
+            if (instances > 0) {
+                vertx.deployVerticle(TodoVerticle.class.getName(), options, deployed);
+            } else {
+                deployed.complete();
+            }
+            return deployed;
+        }).setHandler(result -> {
+            if (result.succeeded()) {
+                LOGGER.info("started in " + (System.currentTimeMillis()
+                        - ManagementFactory.getRuntimeMXBean().getStartTime()) + " ms");
+                startFuture.complete();
+                if (config().getBoolean("startup.exit", false)) {
+                    vertx.close();
+                }
+            } else {
+                startFuture.fail(result.cause());
+            }
+        });
+    }
+}
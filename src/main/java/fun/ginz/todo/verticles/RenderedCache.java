@@ -0,0 +1,83 @@
+package fun.ginz.todo.verticles;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Rendered GET /todos responses of one verticle instance, keyed by request URI and tagged with
+ * the collection version they were rendered at. An entry is only handed out while that version is
+ * still current, so writes need no invalidation of their own. Bodies longer than {@code maxChars}
+ * are not kept.
+ */
+class RenderedCache {
+
+    private final int maxSize;
+    private final int maxChars;
+    private final Map<String, Rendered> entries;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    RenderedCache(int maxSize, int maxChars) {
+        this.maxSize = maxSize;
+        this.maxChars = maxChars;
+        this.entries = new LinkedHashMap<String, Rendered>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Rendered> eldest) {
+                if (size() > RenderedCache.this.maxSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    Rendered get(String uri, long version) {
+        Rendered rendered = entries.get(uri);
+        if (rendered != null) {
+            if (rendered.version == version) {
+                hits++;
+                return rendered;
+            }
+            entries.remove(uri);
+            evictions++;
+        }
+        misses++;
+        return null;
+    }
+
+    boolean accepts(int chars) {
+        return chars <= maxChars;
+    }
+
+    void put(String uri, long version, String body, String cursor) {
+        if (accepts(body.length())) {
+            entries.put(uri, new Rendered(version, body, cursor));
+        }
+    }
+
+    JsonObject stats() {
+        return new JsonObject()
+                .put("hits", hits)
+                .put("misses", misses)
+                .put("evictions", evictions)
+                .put("size", entries.size());
+    }
+
+    static final class Rendered {
+        final long version;
+        final String body;
+        // null on the last page
+        final String cursor;
+
+        private Rendered(long version, String body, String cursor) {
+            this.version = version;
+            this.body = body;
+            this.cursor = cursor;
+        }
+    }
+}
@@ -2,6 +2,9 @@ package fun.ginz.todo.verticles;
 
 import fun.ginz.todo.Contants;
 import fun.ginz.todo.entity.Todo;
+import fun.ginz.todo.service.IdAllocator;
+import fun.ginz.todo.service.IdTakenException;
+import fun.ginz.todo.service.RedisIdAllocator;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.Future;
 import io.vertx.core.http.HttpMethod;
@@ -26,8 +29,11 @@ public class SingleApplicationVerticle extends AbstractVerticle {
     private static final int HTTP_PORT = 8082;
     private static final int REDIS_PORT = 6379;
     private static final String REDIS_TODO_KEY = "VERT_TODO";
+    private static final String REDIS_ID_KEY = "VERT_TODO_ID";
+    private static final int ID_BLOCK = 1000;
 
     private RedisClient redis;
+    private IdAllocator idAllocator;
 
     private void initData() {
         RedisOptions options = new RedisOptions()
@@ -35,6 +41,7 @@ public class SingleApplicationVerticle extends AbstractVerticle {
                 .setPort(config().getInteger("redis.port", REDIS_PORT));
 
         this.redis = RedisClient.create(vertx, options);
+        this.idAllocator = new RedisIdAllocator(redis, REDIS_ID_KEY, ID_BLOCK);
 
         this.redis.hset(REDIS_TODO_KEY, "24", Json.encodePrettily(
                 new Todo(24, "Something to do...", false, 1, "todo/ex")), res -> {
@@ -83,17 +90,23 @@ public class SingleApplicationVerticle extends AbstractVerticle {
 
     private void handleCreate(RoutingContext context) {
         try {
-            Todo todo = wrapObject(new Todo(context.getBodyAsString()), context);
-            String encoded = Json.encodePrettily(todo);
-            redis.hset(REDIS_TODO_KEY, String.valueOf(todo.getId()), encoded, res -> {
-                if (res.succeeded()) {
-                    context.response()
-                            .setStatusCode(201)
-                            .putHeader("Content-Type", "application/json")
-                            .end(encoded);
-                } else {
-                    sendError(503, context.response());
+            Todo todo = new Todo(context.getBodyAsString());
+            wrapObject(todo, context).setHandler(wrapped -> {
+                if (wrapped.failed()) {
+                    sendError(wrapped.cause() instanceof IdTakenException ? 409 : 503, context.response());
+                    return;
                 }
+                String encoded = Json.encodePrettily(todo);
+                redis.hset(REDIS_TODO_KEY, String.valueOf(todo.getId()), encoded, res -> {
+                    if (res.succeeded()) {
+                        context.response()
+                                .setStatusCode(201)
+                                .putHeader("Content-Type", "application/json")
+                                .end(encoded);
+                    } else {
+                        sendError(503, context.response());
+                    }
+                });
             });
         } catch (DecodeException e) {
             sendError(400, context.response());
@@ -152,15 +165,14 @@ public class SingleApplicationVerticle extends AbstractVerticle {
         });
     }
 
-    private Todo wrapObject(Todo todo, RoutingContext context) {
+    private Future<Todo> wrapObject(Todo todo, RoutingContext context) {
         int id = todo.getId();
-        if (id > Todo.getIncId()) {
-            Todo.setIncIdWith(id);
-        } else if (id == 0) {
-            todo.setIncId();
-        }
-        todo.setUrl(context.request().absoluteURI() + "/" + todo.getId());
-        return todo;
+        Future<Integer> allocated = id == 0 ? idAllocator.next() : idAllocator.observe(id).map(id);
+        return allocated.map(n -> {
+            todo.setId(n);
+            todo.setUrl(context.request().absoluteURI() + "/" + n);
+            return todo;
+        });
     }
 
     private void sendError(int statusCode, HttpServerResponse response) {
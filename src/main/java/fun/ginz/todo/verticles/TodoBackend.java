@@ -0,0 +1,208 @@
+package fun.ginz.todo.verticles;
+
+import com.zaxxer.hikari.HikariConfig;
+import fun.ginz.todo.Contants;
+import fun.ginz.todo.codec.TodoCodec;
+import fun.ginz.todo.metrics.TodoMetrics;
+import fun.ginz.todo.service.CachingTodoService;
+import fun.ginz.todo.service.CoalescingTodoService;
+import fun.ginz.todo.service.IdAllocator;
+import fun.ginz.todo.service.JdbcIdAllocator;
+import fun.ginz.todo.service.JdbcTodoService;
+import fun.ginz.todo.service.JdbcTodoStore;
+import fun.ginz.todo.service.MemoryIdAllocator;
+import fun.ginz.todo.service.MemoryTodoEngine;
+import fun.ginz.todo.service.MemoryTodoService;
+import fun.ginz.todo.service.PublishingTodoService;
+import fun.ginz.todo.service.RedisIdAllocator;
+import fun.ginz.todo.service.RedisPool;
+import fun.ginz.todo.service.RedisTodoService;
+import fun.ginz.todo.service.TodoService;
+import fun.ginz.todo.service.WriteBehindTodoService;
+import fun.ginz.todo.service.proxy.ProxiedIdAllocator;
+import fun.ginz.todo.service.proxy.ProxiedTodoService;
+import fun.ginz.todo.service.proxy.TodoStoreService;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.redis.RedisClient;
+import io.vertx.redis.RedisOptions;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The storage a verticle instance works against, picked by {@code service.type}: {@code redis}
+ * (the default), {@code memory}, {@code jdbc} (an embedded H2 database unless {@code jdbc.url}
+ * names another), or {@code proxy} for the {@link TodoStoreVerticle}s listening on
+ * {@code store.address}, wherever they run in the cluster.
+ * <p>
+ * Change events and the write-behind buffer belong to whichever layer owns the storage, so with
+ * {@code proxy} the {@link TodoStoreVerticle}s publish and buffer, not the front ends.
+ */
+final class TodoBackend {
+
+    private static final Integer ID_BLOCK = 1000;
+    private static final Long PROXY_TIMEOUT = 30000L;
+    private static final Integer POOL_DEPTH = 256;
+    private static final Integer POOL_QUEUE = 4096;
+    private static final String JDBC_URL = "jdbc:h2:./data/todos";
+    private static final Integer JDBC_POOL_SIZE = 8;
+    private static final Integer JDBC_QUEUE = 4096;
+    private static final Long WRITE_BEHIND_INTERVAL = 50L;
+    private static final Integer WRITE_BEHIND_BATCH = 512;
+    private static final Integer WRITE_BEHIND_MAX = 10000;
+    private static final Integer SYNC_TOMBSTONES = 10000;
+
+    final TodoService service;
+    final IdAllocator idAllocator;
+    /** Completes once the first requests no longer pay for connecting or loading the store. */
+    final Future<Void> warmUp;
+    private final WriteBehindTodoService writeBehind;
+    private final MemoryTodoEngine engine;
+
+    private TodoBackend(TodoService service, IdAllocator idAllocator, Future<Void> warmUp,
+                        WriteBehindTodoService writeBehind, MemoryTodoEngine engine) {
+        this.service = service;
+        this.idAllocator = idAllocator;
+        this.warmUp = warmUp;
+        this.writeBehind = writeBehind;
+        this.engine = engine;
+    }
+
+    /** Writes out whatever the instance has acknowledged but not stored yet. */
+    Future<Void> flush() {
+        return writeBehind == null ? Future.succeededFuture() : writeBehind.flush();
+    }
+
+    /** Flushes, then lets go of the storage shared with the other instances. */
+    Future<Void> close() {
+        Future<Void> flushed = flush();
+        return engine == null ? flushed : flushed.otherwiseEmpty().compose(v -> engine.release());
+    }
+
+    static TodoBackend create(Vertx vertx, JsonObject config, TodoMetrics metrics) {
+        boolean prettyJson = config.getBoolean("json.pretty", false);
+        // deletes remembered for GET /todos?since=, clients that synced before the oldest start over
+        int tombstones = config.getInteger("sync.tombstones", SYNC_TOMBSTONES);
+        TodoService todoService = null;
+        IdAllocator idAllocator = null;
+        Future<Void> warmUp = Future.succeededFuture();
+        MemoryTodoEngine engine = null;
+
+        String serviceType = config.getString("service.type", "redis");
+        switch (serviceType) {
+            case "jdbc":
+                HikariConfig jdbc = new HikariConfig();
+                jdbc.setJdbcUrl(config.getString("jdbc.url", JDBC_URL));
+                jdbc.setUsername(config.getString("jdbc.user", "sa"));
+                jdbc.setPassword(config.getString("jdbc.password", ""));
+                jdbc.setMaximumPoolSize(config.getInteger("jdbc.pool.size", JDBC_POOL_SIZE));
+                JdbcTodoStore database = JdbcTodoStore.shared(vertx, jdbc,
+                        config.getInteger("jdbc.threads", jdbc.getMaximumPoolSize()),
+                        config.getInteger("jdbc.queue", JDBC_QUEUE),
+                        config.getBoolean("jdbc.virtual-threads", false), metrics);
+                todoService = new JdbcTodoService(database, prettyJson, tombstones);
+                JdbcIdAllocator jdbcIds = new JdbcIdAllocator(database, config.getInteger("id.block", ID_BLOCK));
+                idAllocator = jdbcIds;
+                warmUp = CompositeFuture.all(database.warmUp(), jdbcIds.prefetch()).mapEmpty();
+                break;
+            case "memory":
+                engine = MemoryTodoEngine.shared(vertx,
+                        new File(config.getString("memory.dir", "data")),
+                        config.getLong("memory.snapshot", 60000L),
+                        config.getBoolean("memory.fsync", false), tombstones);
+                todoService = new MemoryTodoService(engine, prettyJson);
+                idAllocator = new MemoryIdAllocator(engine);
+                warmUp = engine.warmUp();
+                break;
+            case "proxy":
+                TodoStoreService store = TodoStoreService.createProxy(vertx,
+                        config.getString("store.address", TodoStoreService.ADDRESS),
+                        new DeliveryOptions().setSendTimeout(config.getLong("proxy.timeout", PROXY_TIMEOUT)));
+                todoService = new ProxiedTodoService(store);
+                // every call is an event bus round trip here, so point reads are batched unless turned off
+                if (config.getBoolean("coalesce.enabled", true)) {
+                    todoService = coalesce(vertx, todoService, config, metrics);
+                }
+                idAllocator = new ProxiedIdAllocator(store);
+                break;
+            case "redis":
+            default:
+                RedisOptions options = new RedisOptions()
+                        .setHost(config.getString("redis.host", "127.0.0.1"))
+                        .setPort(config.getInteger("redis.port", 6379));
+                // the todos may be sharded over other nodes, ids and cache invalidations stay on redis.host
+                List<RedisPool> endpoints = new ArrayList<>();
+                for (Object endpoint : config.getJsonArray("redis.endpoints",
+                        new JsonArray().add(options.getHost() + ":" + options.getPort()))) {
+                    String address = (String) endpoint;
+                    int colon = address.lastIndexOf(':');
+                    RedisPool pool = new RedisPool(vertx, new RedisOptions()
+                            .setHost(address.substring(0, colon))
+                            .setPort(Integer.parseInt(address.substring(colon + 1))),
+                            config.getInteger("redis.pool.size", 1),
+                            config.getString("redis.pool.selection", "least-pending"),
+                            config.getInteger("redis.pool.depth", POOL_DEPTH),
+                            config.getInteger("redis.pool.queue", POOL_QUEUE));
+                    if (metrics != null) {
+                        metrics.register("todo_redis_pool", pool::stats);
+                    }
+                    endpoints.add(pool);
+                }
+                RedisTodoService redisService = new RedisTodoService(vertx, endpoints,
+                        config.getInteger("redis.shards", 1),
+                        TodoCodec.forName(config.getString("redis.format", "json"), prettyJson), metrics, tombstones);
+                todoService = redisService;
+                if (config.getBoolean("coalesce.enabled", false)) {
+                    todoService = coalesce(vertx, todoService, config, metrics);
+                }
+                RedisIdAllocator redisIds = new RedisIdAllocator(RedisClient.create(vertx, options),
+                        Contants.REDIS_ID_KEY, config.getInteger("id.block", ID_BLOCK));
+                idAllocator = redisIds;
+                warmUp = CompositeFuture.all(redisService.warmUp(), redisIds.prefetch()).mapEmpty();
+                if (config.getBoolean("cache.enabled", false)) {
+                    CachingTodoService caching = new CachingTodoService(vertx, todoService, options,
+                            config.getInteger("cache.size", 10000),
+                            config.getLong("cache.ttl", 60000L));
+                    if (metrics != null) {
+                        metrics.register("todo_cache", caching::stats);
+                    }
+                    todoService = caching;
+                }
+        }
+
+        boolean ownsStorage = todoService != null && !"proxy".equals(serviceType);
+        // outside the cache, so that other instances are only told about writes once they are stored,
+        // and under the write-behind buffer, so that the events carry the stored versions
+        if (ownsStorage && config.getBoolean("feed.enabled", true)) {
+            todoService = new PublishingTodoService(vertx, todoService, Contants.EVENT_TODO_CHANGES);
+        }
+        WriteBehindTodoService writeBehind = null;
+        if (ownsStorage && config.getBoolean("writebehind.enabled", false)) {
+            writeBehind = new WriteBehindTodoService(vertx, todoService,
+                    config.getLong("writebehind.interval", WRITE_BEHIND_INTERVAL),
+                    config.getInteger("writebehind.batch", WRITE_BEHIND_BATCH),
+                    config.getInteger("writebehind.max", WRITE_BEHIND_MAX));
+            if (metrics != null) {
+                metrics.register("todo_writebehind", writeBehind::stats);
+            }
+            todoService = writeBehind;
+        }
+        return new TodoBackend(todoService, idAllocator, warmUp, writeBehind, engine);
+    }
+
+    private static TodoService coalesce(Vertx vertx, TodoService todoService, JsonObject config, TodoMetrics metrics) {
+        CoalescingTodoService coalescing = new CoalescingTodoService(vertx, todoService,
+                config.getLong("coalesce.window", 0L),
+                config.getInteger("coalesce.batch", 256));
+        if (metrics != null) {
+            metrics.register("todo_coalesce", coalescing::stats);
+        }
+        return coalescing;
+    }
+}
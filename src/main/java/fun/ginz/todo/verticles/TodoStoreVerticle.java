@@ -0,0 +1,37 @@
+package fun.ginz.todo.verticles;
+
+import fun.ginz.todo.metrics.TodoMetrics;
+import fun.ginz.todo.service.proxy.TodoStoreService;
+import fun.ginz.todo.service.proxy.TodoStoreServiceImpl;
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Future;
+import io.vertx.serviceproxy.ServiceBinder;
+
+/**
+ * Serves the backend picked by {@code service.type} as a {@link TodoStoreService} on
+ * {@code store.address}, for {@link TodoVerticle}s running with {@code service.type} proxy. Deployed
+ * as workers, or on other nodes of a clustered Vert.x, storage scales apart from the HTTP front
+ * ends. Instances share the address and the event bus hands the calls to them in turn.
+ */
+public class TodoStoreVerticle extends AbstractVerticle {
+
+    private TodoBackend backend;
+
+    @Override
+    public void start() throws Exception {
+        if ("proxy".equals(config().getString("service.type"))) {
+            throw new IllegalArgumentException("a todo store needs a storage backend, not a proxy");
+        }
+        TodoMetrics metrics = config().getBoolean("metrics.enabled", true) ? TodoMetrics.shared(vertx) : null;
+        backend = TodoBackend.create(vertx, config(), metrics);
+        new ServiceBinder(vertx)
+                .setAddress(config().getString("store.address", TodoStoreService.ADDRESS))
+                .register(TodoStoreService.class, new TodoStoreServiceImpl(backend.service, backend.idAllocator));
+    }
+
+    @Override
+    public void stop(Future<Void> stopFuture) {
+        // writes acknowledged from the write-behind buffer still have to reach the store
+        backend.close().setHandler(res -> stopFuture.complete());
+    }
+}
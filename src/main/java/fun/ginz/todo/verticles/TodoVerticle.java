@@ -1,53 +1,124 @@
 package fun.ginz.todo.verticles;
 
 import fun.ginz.todo.Contants;
+import fun.ginz.todo.codec.JsonTodoCodec;
+import fun.ginz.todo.codec.TodoJson;
 import fun.ginz.todo.entity.Todo;
-import fun.ginz.todo.service.RedisTodoService;
+import fun.ginz.todo.metrics.TodoMetrics;
+import fun.ginz.todo.service.Changes;
+import fun.ginz.todo.service.IdAllocator;
+import fun.ginz.todo.service.IdTakenException;
+import fun.ginz.todo.service.Page;
+import fun.ginz.todo.service.TodoQuery;
 import fun.ginz.todo.service.TodoService;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.AsyncResult;
+import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpMethod;
 import io.vertx.core.http.HttpServerResponse;
 import io.vertx.core.json.DecodeException;
-import io.vertx.core.json.Json;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.handler.BodyHandler;
 import io.vertx.ext.web.handler.CorsHandler;
-import io.vertx.redis.RedisOptions;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.function.Consumer;
 
 public class TodoVerticle extends AbstractVerticle {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(TodoVerticle.class);
+
     private static final String HOST = "0.0.0.0";
     private static final Integer PORT = 8082;
+    private static final Integer PAGE_SIZE = 100;
+    private static final Integer PAGE_MAX = 1000;
+    private static final Integer RENDER_CACHE_SIZE = 64;
+    private static final Integer RENDER_CACHE_CHARS = 1 << 20;
+    private static final Integer FEED_BUFFER = 64 * 1024;
+    private static final Long FEED_HEARTBEAT = 15000L;
+    private static final Integer MAX_IN_FLIGHT = 1000;
+    private static final Integer MIN_IN_FLIGHT = 16;
+    private static final String SHARED_MAP = "fun.ginz.todo";
 
     private TodoService todoService;
+    private IdAllocator idAllocator;
+    private int pageSize;
+    private int pageMax;
+    private boolean prettyJson;
+    private TodoMetrics metrics;
+    private String cacheControl;
+    private RenderedCache rendered;
+    private ChangeFeed feed;
+    private AdmissionControl admission;
+    private String retryAfter;
+    private Future<Void> warmUp;
+    private TodoBackend backend;
 
     private void initData() {
-        String serviceType = config().getString("service.type", "redis");
-        switch (serviceType) {
-            case "jdbc":
-//                todoService = new JdbcTodoService(vertx, config());
-                break;
-            case "redis":
-            default:
-                RedisOptions options = new RedisOptions()
-                        .setHost(config().getString("redis.host", "127.0.0.1"))
-                        .setPort(config().getInteger("redis.port", 6379));
-                todoService = new RedisTodoService(vertx, options);
-        }
-
-        todoService.initData().setHandler(res -> {
-            if (res.failed()) {
-                res.cause().printStackTrace();
+        metrics = config().getBoolean("metrics.enabled", true) ? TodoMetrics.shared(vertx) : null;
+        pageSize = config().getInteger("page.size", PAGE_SIZE);
+        pageMax = config().getInteger("page.max", PAGE_MAX);
+        prettyJson = config().getBoolean("json.pretty", false);
+
+        // clients may keep responses for max-age seconds, by default they revalidate every time
+        long maxAge = config().getLong("http.max-age", 0L);
+        cacheControl = maxAge > 0 ? "max-age=" + maxAge : "no-cache";
+        int renderSize = config().getInteger("render.cache.size", RENDER_CACHE_SIZE);
+        if (renderSize > 0) {
+            rendered = new RenderedCache(renderSize, config().getInteger("render.cache.chars", RENDER_CACHE_CHARS));
+            if (metrics != null) {
+                metrics.register("todo_render_cache", rendered::stats);
             }
-        });
+        }
+
+        long retryAfterSeconds = config().getLong("admission.retry-after", 1L);
+        retryAfter = String.valueOf(retryAfterSeconds);
+        if (config().getBoolean("admission.enabled", true)) {
+            admission = new AdmissionControl(
+                    config().getInteger("admission.min-in-flight", MIN_IN_FLIGHT),
+                    config().getInteger("admission.max-in-flight", MAX_IN_FLIGHT),
+                    config().getBoolean("admission.adaptive", true),
+                    config().getInteger("admission.status", 503),
+                    retryAfterSeconds);
+            if (metrics != null) {
+                metrics.register("todo_admission", admission::stats);
+            }
+        }
+
+        backend = TodoBackend.create(vertx, config(), metrics);
+        todoService = backend.service;
+        idAllocator = backend.idAllocator;
+        warmUp = backend.warmUp;
+
+        // the backend publishes the writes, wherever the storage runs
+        if (config().getBoolean("feed.enabled", true)) {
+            feed = new ChangeFeed(vertx, Contants.EVENT_TODO_CHANGES,
+                    config().getInteger("feed.buffer", FEED_BUFFER),
+                    config().getLong("feed.heartbeat", FEED_HEARTBEAT));
+            if (metrics != null) {
+                metrics.register("todo_feed", feed::stats);
+            }
+        }
+
+        // the demo data is opt-in, and with several instances deployed only the first one seeds it
+        if (config().getBoolean("data.seed", false)
+                && vertx.sharedData().getLocalMap(SHARED_MAP).putIfAbsent("seeded", true) == null) {
+            todoService.initData().setHandler(res -> {
+                if (res.failed()) {
+                    res.cause().printStackTrace();
+                }
+            });
+        }
     }
 
     @Override
@@ -68,16 +139,38 @@ public class TodoVerticle extends AbstractVerticle {
         allowMethods.add(HttpMethod.DELETE);
 
         Router router = Router.router(vertx);
-        router.route().handler(BodyHandler.create());
         router.route().handler(CorsHandler.create("*").allowedHeaders(allowHeaders).allowedMethods(allowMethods));
+        // the feed goes before the body handler, which would read the request a WebSocket upgrade needs
+        if (feed != null) {
+            router.get(Contants.API_FEED).handler(feed::handle);
+        }
+        if (metrics != null) {
+            router.get(Contants.API_METRICS).handler(this::handleMetrics);
+        }
+        // shed before the body is read, scrapes and feeds above are never turned away
+        if (admission != null) {
+            router.route().handler(admission::handle);
+        }
+        router.route().handler(BodyHandler.create());
+
+        // bulk routes go first so that "_bulk" is not taken for a todo id
+        router.post(Contants.API_BULK).handler(instrument("bulk_create", this::handleBulkCreate));
+        router.patch(Contants.API_BULK).handler(instrument("bulk_update", this::handleBulkUpdate));
+        router.delete(Contants.API_BULK).handler(instrument("bulk_delete", this::handleBulkDelete));
 
-        router.get(Contants.API_GET_ONE).handler(this::handleGetOne);
-        router.get(Contants.API_GET_ALL).handler(this::handleGetAll);
-        router.post(Contants.API_CREATE).handler(this::handleCreate);
-        router.patch(Contants.API_UPDATE).handler(this::handleUpdate);
-        router.delete(Contants.API_DEL_ONE).handler(this::handleDelOne);
-        router.delete(Contants.API_DEL_ALL).handler(this::handleDelAll);
+        router.get(Contants.API_GET_ONE).handler(instrument("get_one", this::handleGetOne));
+        router.get(Contants.API_GET_ALL).handler(instrument("get_all", this::handleGetAll));
+        router.post(Contants.API_CREATE).handler(instrument("create", this::handleCreate));
+        router.patch(Contants.API_UPDATE).handler(instrument("update", this::handleUpdate));
+        router.delete(Contants.API_DEL_ONE).handler(instrument("delete_one", this::handleDelOne));
+        router.delete(Contants.API_DEL_ALL).handler(instrument("delete_all", this::handleDelAll));
 
+        // the store connects while the server binds, requests arriving before it is up queue for it
+        warmUp.setHandler(res -> {
+            if (res.failed()) {
+                LOGGER.warn("storage is not ready yet, requests will retry it", res.cause());
+            }
+        });
         vertx.createHttpServer()
                 .requestHandler(router)
                 .listen(config().getInteger("http.port", PORT),
@@ -90,13 +183,32 @@ public class TodoVerticle extends AbstractVerticle {
                         });
     }
 
+    @Override
+    public void stop(Future<Void> stopFuture) {
+        // writes acknowledged from the write-behind buffer still have to reach the store
+        backend.close().setHandler(res -> stopFuture.complete());
+    }
+
+
+    private Handler<RoutingContext> instrument(String route, Handler<RoutingContext> handler) {
+        return metrics == null ? handler : metrics.route(route).wrap(handler);
+    }
+
+    private void handleMetrics(RoutingContext routingContext) {
+        routingContext.response()
+                .putHeader("Content-Type", "text/plain; version=0.0.4")
+                .end(metrics.scrape());
+    }
 
     private <T> Handler<AsyncResult<T>> resultHandler(RoutingContext context, Consumer<T> consumer) {
         return res -> {
             if (res.succeeded()) {
                 consumer.accept(res.result());
+            } else if (res.cause() instanceof IdTakenException) {
+                // storing it could overwrite a todo created under the id the allocator handed out
+                context.response().setStatusCode(409).end();
             } else {
-                serviceUnavailable(context);
+                serviceUnavailable(context, res.cause());
             }
         };
     }
@@ -108,31 +220,293 @@ public class TodoVerticle extends AbstractVerticle {
             return;
         }
 
-        todoService.getCertain(todoID).setHandler(resultHandler(routingContext, todo -> {
-            if (!todo.isPresent()) {
+        todoService.getCertainRaw(todoID).setHandler(resultHandler(routingContext, raw -> {
+            if (!raw.isPresent()) {
                 notFound(routingContext);
+                return;
+            }
+            // todos stored before they had a version get no validator
+            long version = JsonTodoCodec.version(raw.get());
+            if (version != 0 && notModified(routingContext, version)) {
+                return;
+            }
+            routingContext.response()
+                    .putHeader("Content-Type", "application/json")
+                    .end(raw.get());
+        }));
+    }
+
+    private void handleGetAll(RoutingContext routingContext) {
+        String cursor = routingContext.request().getParam("cursor");
+        String limit = routingContext.request().getParam("limit");
+        String completed = routingContext.request().getParam("completed");
+        String sort = routingContext.request().getParam("sort");
+        String since = routingContext.request().getParam("since");
+        if (since != null) {
+            // changes come in version order, which does not mix with filters, sorting or cursors
+            if (completed != null || sort != null || cursor != null) {
+                badRequest(routingContext);
+                return;
+            }
+            handleChanges(routingContext, since, limit);
+            return;
+        }
+        if (completed != null || sort != null) {
+            handleQuery(routingContext, completed, sort, cursor, limit);
+            return;
+        }
+        if (cursor == null && limit == null) {
+            listing(routingContext, version -> streamAll(routingContext, Page.FIRST, -1, version,
+                    rendered == null ? null : new HashSet<>(), rendered == null ? null : new StringBuilder()));
+            return;
+        }
+
+        int count;
+        try {
+            count = limit == null ? pageSize : Integer.parseInt(limit);
+        } catch (NumberFormatException e) {
+            badRequest(routingContext);
+            return;
+        }
+        if (count <= 0) {
+            badRequest(routingContext);
+            return;
+        }
+
+        listing(routingContext, version -> todoService.scanRaw(cursor == null ? Page.FIRST : cursor, Math.min(count, pageMax))
+                .setHandler(res -> {
+                    if (res.failed() && res.cause() instanceof NumberFormatException) {
+                        // a cursor that was not handed out by us
+                        badRequest(routingContext);
+                    } else {
+                        resultHandler(routingContext, (Page<String> page) -> writePage(routingContext, page, version)).handle(res);
+                    }
+                }));
+    }
+
+    private void handleQuery(RoutingContext routingContext, String completed, String sort, String cursor, String limit) {
+        Boolean state = null;
+        if (completed != null) {
+            if (!"true".equals(completed) && !"false".equals(completed)) {
+                badRequest(routingContext);
+                return;
+            }
+            state = Boolean.valueOf(completed);
+        }
+        // sort=order is the default and the only key there is an index for, "-order" reverses it
+        if (sort != null && !"order".equals(sort) && !"-order".equals(sort)) {
+            badRequest(routingContext);
+            return;
+        }
+
+        int count;
+        try {
+            count = limit == null ? pageSize : Integer.parseInt(limit);
+        } catch (NumberFormatException e) {
+            badRequest(routingContext);
+            return;
+        }
+        if (count <= 0) {
+            badRequest(routingContext);
+            return;
+        }
+
+        TodoQuery query = new TodoQuery(state, "-order".equals(sort),
+                cursor == null ? Page.FIRST : cursor, Math.min(count, pageMax));
+        listing(routingContext, version -> todoService.queryRaw(query).setHandler(res -> {
+            if (res.failed() && res.cause() instanceof NumberFormatException) {
+                // a cursor that was not handed out by us
+                badRequest(routingContext);
             } else {
+                resultHandler(routingContext, (Page<String> page) -> writePage(routingContext, page, version)).handle(res);
+            }
+        }));
+    }
+
+    /**
+     * Answers {@code GET /todos?since=<version>} with the todos written and the ids deleted after
+     * that version, and the version to ask from next, {@code 0} for everything there is. A version
+     * the store no longer has every delete for is gone (410), the client has to start over from 0.
+     */
+    private void handleChanges(RoutingContext routingContext, String since, String limit) {
+        int count;
+        try {
+            count = limit == null ? pageMax : Integer.parseInt(limit);
+        } catch (NumberFormatException e) {
+            badRequest(routingContext);
+            return;
+        }
+        if (count <= 0) {
+            badRequest(routingContext);
+            return;
+        }
+
+        todoService.changes(since, Math.min(count, pageMax)).setHandler(res -> {
+            if (res.failed() && res.cause() instanceof NumberFormatException) {
+                // a version that was not handed out by us
+                badRequest(routingContext);
+                return;
+            }
+            resultHandler(routingContext, (Changes changes) -> {
+                if (changes.isExpired()) {
+                    routingContext.response().setStatusCode(410).end();
+                    return;
+                }
+                StringBuilder body = new StringBuilder()
+                        .append("{\"version\":\"").append(changes.getVersion())
+                        .append("\",\"more\":").append(!changes.isLast())
+                        .append(",\"todos\":[").append(String.join(",", changes.getItems()))
+                        .append("],\"deleted\":[");
+                for (int i = 0; i < changes.getDeleted().size(); i++) {
+                    body.append(i == 0 ? "" : ",").append(changes.getDeleted().get(i));
+                }
                 routingContext.response()
                         .putHeader("Content-Type", "application/json")
-                        .end(Json.encodePrettily(todo.get()));
+                        .end(body.append("]}").toString());
+            }).handle(res);
+        });
+    }
+
+    /**
+     * Answers a listing from the collection version alone when it can: 304 if the client holds it
+     * already, the rendered body if this instance rendered the same URI at that version. Otherwise
+     * {@code render} runs with the version, which is read before any todo so that the ETag is never
+     * newer than the body it goes with.
+     */
+    private void listing(RoutingContext routingContext, Consumer<Long> render) {
+        todoService.version().setHandler(resultHandler(routingContext, version -> {
+            if (notModified(routingContext, version)) {
+                return;
+            }
+            RenderedCache.Rendered cached = rendered == null ? null : rendered.get(routingContext.request().uri(), version);
+            if (cached != null) {
+                writeBody(routingContext.response(), cached.body, cached.cursor);
+            } else {
+                render.accept(version);
             }
         }));
     }
 
-    private void handleGetAll(RoutingContext routingContext) {
-        todoService.getAll().setHandler(resultHandler(routingContext, list -> routingContext.response()
-                .putHeader("Content-Type", "application/json")
-                .end(Json.encodePrettily(list))));
+    private static String etag(long version) {
+        return "\"" + version + "\"";
+    }
+
+    private boolean notModified(RoutingContext routingContext, long version) {
+        String etag = etag(version);
+        HttpServerResponse response = routingContext.response()
+                .putHeader("ETag", etag)
+                .putHeader("Cache-Control", cacheControl);
+        String ifNoneMatch = routingContext.request().getHeader("If-None-Match");
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        // If-None-Match compares weakly, so a W/ prefix the client or a proxy added still matches
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals("*") || candidate.equals(etag) || candidate.equals("W/" + etag)) {
+                response.setStatusCode(304).end();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writePage(RoutingContext routingContext, Page<String> page, long version) {
+        String body = "[" + String.join(",", page.getItems()) + "]";
+        String cursor = page.isLast() ? null : page.getCursor();
+        if (rendered != null) {
+            rendered.put(routingContext.request().uri(), version, body, cursor);
+        }
+        writeBody(routingContext.response(), body, cursor);
+    }
+
+    private void writeBody(HttpServerResponse response, String body, String cursor) {
+        response.putHeader("Content-Type", "application/json");
+        if (cursor != null) {
+            response.putHeader(Contants.HEADER_NEXT_CURSOR, cursor);
+        }
+        response.end(body);
+    }
+
+    private void streamAll(RoutingContext routingContext, String cursor, int written, long version,
+                           Set<Integer> seen, StringBuilder body) {
+        // written is -1 until the response head and the opening bracket are out
+        todoService.scanRaw(cursor, pageSize).setHandler(res -> {
+            HttpServerResponse response = routingContext.response();
+            if (response.closed()) {
+                return;
+            }
+            if (res.failed()) {
+                if (written < 0) {
+                    serviceUnavailable(routingContext, res.cause());
+                } else {
+                    // the status line is already out, so all we can do is cut the body short
+                    LOGGER.error("GET " + routingContext.request().path() + " failed after " + written + " todos", res.cause());
+                    response.close();
+                }
+                return;
+            }
+
+            int count = written;
+            if (count < 0) {
+                response.setChunked(true).putHeader("Content-Type", "application/json").write("[");
+                count = 0;
+            }
+            // the body is kept for the rendered cache until it grows past what the cache takes. A scan
+            // hands out todos twice when the table grows under it; the ids are only tracked as long as
+            // the body is kept, so that a cached body has every todo once and memory stays bounded by
+            // the cache, while longer listings may repeat a todo as HSCAN does
+            StringBuilder kept = body;
+            Set<Integer> unique = seen;
+            Page<String> page = res.result();
+            for (String raw : page.getItems()) {
+                if (unique != null && !unique.add(JsonTodoCodec.id(raw))) {
+                    continue;
+                }
+                if (count++ > 0) {
+                    response.write(",");
+                    if (kept != null) {
+                        kept.append(',');
+                    }
+                }
+                response.write(raw);
+                if (kept != null) {
+                    kept.append(raw);
+                    if (!rendered.accepts(kept.length() + 2)) {
+                        kept = null;
+                        unique = null;
+                    }
+                }
+            }
+
+            final int total = count;
+            final StringBuilder next = kept;
+            final Set<Integer> nextSeen = unique;
+            if (page.isLast()) {
+                response.end("]");
+                if (kept != null) {
+                    rendered.put(routingContext.request().uri(), version, "[" + kept + "]", null);
+                }
+            } else if (response.writeQueueFull()) {
+                response.drainHandler(v -> streamAll(routingContext, page.getCursor(), total, version, nextSeen, next));
+            } else {
+                streamAll(routingContext, page.getCursor(), total, version, nextSeen, next);
+            }
+        });
     }
 
     private void handleCreate(RoutingContext routingContext) {
         try {
-            Todo todo = wrapObject(new Todo(routingContext.getBodyAsString()), routingContext);
-            todoService.insert(todo).setHandler(resultHandler(routingContext, result -> {
+            Todo todo = TodoJson.decode(routingContext.getBody());
+            wrapObject(todo, routingContext.request().absoluteURI()).compose(todoService::insert).setHandler(resultHandler(routingContext, result -> {
                 routingContext.response()
                         .setStatusCode(201)
-                        .putHeader("Content-Type", "application/json")
-                        .end(Json.encodePrettily(result));
+                        .putHeader("Content-Type", "application/json");
+                // a todo still in the write-behind buffer has no version yet
+                if (result.getVersion() != 0) {
+                    routingContext.response().putHeader("ETag", etag(result.getVersion()));
+                }
+                routingContext.response().end(encode(result));
             }));
         } catch (DecodeException e) {
             badRequest(routingContext);
@@ -146,14 +520,16 @@ public class TodoVerticle extends AbstractVerticle {
                 badRequest(routingContext);
                 return;
             }
-            Todo newTodo = new Todo(routingContext.getBodyAsString());
+            Todo newTodo = TodoJson.decode(routingContext.getBody());
             todoService.update(todoID, newTodo).setHandler(resultHandler(routingContext, todo -> {
                 if (todo == null) {
                     notFound(routingContext);
                 } else {
-                    routingContext.response()
-                            .putHeader("Content-Type", "application/json")
-                            .end(Json.encodePrettily(todo));
+                    routingContext.response().putHeader("Content-Type", "application/json");
+                    if (todo.getVersion() != 0) {
+                        routingContext.response().putHeader("ETag", etag(todo.getVersion()));
+                    }
+                    routingContext.response().end(encode(todo));
                 }
             }));
         } catch (DecodeException e) {
@@ -161,12 +537,79 @@ public class TodoVerticle extends AbstractVerticle {
         }
     }
 
+    private void handleBulkCreate(RoutingContext routingContext) {
+        List<Todo> todos;
+        try {
+            todos = decodeList(routingContext);
+        } catch (DecodeException e) {
+            badRequest(routingContext);
+            return;
+        }
+
+        String base = routingContext.request().absoluteURI().replace(Contants.API_BULK, Contants.API_CREATE);
+        List<Future> wrapped = new ArrayList<>(todos.size());
+        Set<Integer> clientIds = new HashSet<>();
+        for (Todo todo : todos) {
+            // a client id given twice is reserved once, the last of its todos replaces the others
+            if (todo.getId() != 0 && !clientIds.add(todo.getId())) {
+                todo.setUrl(base + "/" + todo.getId());
+                continue;
+            }
+            wrapped.add(wrapObject(todo, base));
+        }
+        CompositeFuture.all(wrapped).compose(v -> todoService.insertAll(todos))
+                .setHandler(resultHandler(routingContext, result -> routingContext.response()
+                        .setStatusCode(201)
+                        .putHeader("Content-Type", "application/json")
+                        .end(encode(result))));
+    }
+
+    private void handleBulkUpdate(RoutingContext routingContext) {
+        List<Todo> patches;
+        try {
+            patches = decodeList(routingContext);
+        } catch (DecodeException e) {
+            badRequest(routingContext);
+            return;
+        }
+        if (patches.stream().anyMatch(patch -> patch.getId() == 0)) {
+            badRequest(routingContext);
+            return;
+        }
+
+        todoService.updateAll(patches).setHandler(resultHandler(routingContext, result -> routingContext.response()
+                .putHeader("Content-Type", "application/json")
+                .end(encode(result))));
+    }
+
+    private void handleBulkDelete(RoutingContext routingContext) {
+        List<String> todoIDs = new ArrayList<>();
+        try {
+            for (Object id : routingContext.getBodyAsJsonArray()) {
+                if (!(id instanceof Number || id instanceof String)) {
+                    badRequest(routingContext);
+                    return;
+                }
+                todoIDs.add(String.valueOf(id));
+            }
+        } catch (DecodeException e) {
+            badRequest(routingContext);
+            return;
+        }
+
+        todoService.deleteMany(todoIDs).setHandler(deleteHandler(routingContext));
+    }
+
+    private List<Todo> decodeList(RoutingContext routingContext) {
+        return TodoJson.decodeArray(routingContext.getBody());
+    }
+
     private Handler<AsyncResult<Void>> deleteHandler(RoutingContext context) {
         return res -> {
             if (res.succeeded()) {
                 context.response().setStatusCode(204).end();
             } else {
-                serviceUnavailable(context);
+                serviceUnavailable(context, res.cause());
             }
         };
     }
@@ -181,6 +624,14 @@ public class TodoVerticle extends AbstractVerticle {
         todoService.deleteAll().setHandler(deleteHandler(routingContext));
     }
 
+    private Buffer encode(Todo todo) {
+        return TodoJson.encode(todo, prettyJson);
+    }
+
+    private Buffer encode(List<Todo> todos) {
+        return TodoJson.encode(todos, prettyJson);
+    }
+
     private void sendError(int statusCode, HttpServerResponse response) {
         response.setStatusCode(statusCode).end();
     }
@@ -193,17 +644,23 @@ public class TodoVerticle extends AbstractVerticle {
         context.response().setStatusCode(404).end();
     }
 
-    private void serviceUnavailable(RoutingContext context) {
+    private void serviceUnavailable(RoutingContext context, Throwable cause) {
+        if (cause instanceof RejectedExecutionException) {
+            // a saturated store is load to shed like any other, logging every one would only add to it
+            context.response().setStatusCode(503).putHeader("Retry-After", retryAfter).end();
+            return;
+        }
+        LOGGER.error(context.request().method() + " " + context.request().path() + " failed", cause);
         context.response().setStatusCode(503).end();
     }
 
-    private Todo wrapObject(Todo todo, RoutingContext context) {
+    private Future<Todo> wrapObject(Todo todo, String base) {
         int id = todo.getId();
-        if (id > Todo.getIncId()) {
-            Todo.setIncIdWith(id);
-        } else if (id == 0)
-            todo.setIncId();
-        todo.setUrl(context.request().absoluteURI() + "/" + todo.getId());
-        return todo;
+        Future<Integer> allocated = id == 0 ? idAllocator.next() : idAllocator.observe(id).map(id);
+        return allocated.map(n -> {
+            todo.setId(n);
+            todo.setUrl(base + "/" + n);
+            return todo;
+        });
     }
 }
@@ -0,0 +1,9 @@
+-- Moves the id counter forward to ARGV[1], never backwards.
+-- KEYS[1] id counter. Returns 1 if the counter moved, 0 if it had reached ARGV[1] already.
+local current = tonumber(redis.call('GET', KEYS[1]) or '0')
+local wanted = tonumber(ARGV[1])
+if current < wanted then
+    redis.call('SET', KEYS[1], wanted)
+    return 1
+end
+return 0
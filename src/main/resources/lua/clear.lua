@@ -0,0 +1,13 @@
+-- Drops every todo, index and change and bumps the collection version, which is kept, along with
+-- the horizon: no earlier version can be synced from, as the deletes are not logged one by one.
+-- UNLINK frees a big hash in the background instead of blocking the server until it is gone;
+-- servers before 4.0 do not have it and get DEL.
+-- KEYS[1] todo hash, KEYS[2] order index, KEYS[3] open index, KEYS[4] done index,
+-- KEYS[5] collection version, KEYS[6] change log, KEYS[7] tombstones, KEYS[8] horizon.
+-- Returns the new collection version.
+if not pcall(redis.call, 'UNLINK', KEYS[1], KEYS[2], KEYS[3], KEYS[4], KEYS[6], KEYS[7]) then
+    redis.call('DEL', KEYS[1], KEYS[2], KEYS[3], KEYS[4], KEYS[6], KEYS[7])
+end
+local version = redis.call('INCR', KEYS[5])
+redis.call('SET', KEYS[8], version)
+return version
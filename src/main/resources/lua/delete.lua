@@ -0,0 +1,32 @@
+-- Removes todos from the hash and from every index in one step, bumping the collection version
+-- if any of them existed and logging those as deleted at it. Only the newest tombstones are kept;
+-- dropping older ones moves the horizon up to their version, since changes after an earlier
+-- version can no longer be told in full.
+-- KEYS[1] todo hash, KEYS[2] order index, KEYS[3] open index, KEYS[4] done index,
+-- KEYS[5] collection version, KEYS[6] change log, KEYS[7] tombstones, KEYS[8] horizon,
+-- ARGV[1] the most tombstones to keep, then the todo ids. Returns the number of todos removed.
+local removed = 0
+local version
+for i = 2, #ARGV do
+    local id = ARGV[i]
+    if redis.call('HDEL', KEYS[1], id) == 1 then
+        removed = removed + 1
+        version = version or redis.call('INCR', KEYS[5])
+        redis.call('ZADD', KEYS[6], version, id)
+        redis.call('ZADD', KEYS[7], version, id)
+    end
+    redis.call('ZREM', KEYS[2], id)
+    redis.call('ZREM', KEYS[3], id)
+    redis.call('ZREM', KEYS[4], id)
+end
+
+local excess = redis.call('ZCARD', KEYS[7]) - tonumber(ARGV[1])
+if excess > 0 then
+    local oldest = redis.call('ZRANGE', KEYS[7], 0, excess - 1, 'WITHSCORES')
+    for i = 1, #oldest, 2 do
+        redis.call('ZREM', KEYS[6], oldest[i])
+    end
+    redis.call('ZREMRANGEBYRANK', KEYS[7], 0, excess - 1)
+    redis.call('SET', KEYS[8], oldest[#oldest])
+end
+return removed
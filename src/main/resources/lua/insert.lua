@@ -0,0 +1,29 @@
+-- Stores todos and adds them to the indexes in one step, stamping them with the collection
+-- version after bumping it once, and logs them as changed at that version.
+-- KEYS[1] todo hash, KEYS[2] order index, KEYS[3] open index, KEYS[4] done index,
+-- KEYS[5] collection version, KEYS[6] change log, KEYS[7] tombstones, ARGV groups of todo id,
+-- order, completed ('1' or '0') and the stored document. Returns the new collection version.
+
+-- documents come either as JSON or in the current binary layout of BinaryTodoCodec, where the
+-- version is the long at offset 10. JSON is kept byte for byte as the service encoded it, with
+-- the version written last, so the number after the last "version" key is the one to replace;
+-- a quote inside a string is escaped, so the key cannot be matched there
+local function stamp(doc, version)
+    if doc:byte(1) == 2 then
+        return doc:sub(1, 10) .. struct.pack('>i8', version) .. doc:sub(19)
+    end
+    local head, tail = doc:match('^(.*"version"%s*:%s*)%-?%d+(.-)$')
+    if not head then
+        return doc
+    end
+    return head .. string.format('%d', version) .. tail
+end
+
+local version = redis.call('INCR', KEYS[5])
+for i = 1, #ARGV, 4 do
+    redis.call('HSET', KEYS[1], ARGV[i], stamp(ARGV[i + 3], version))
+    index(ARGV[i], tonumber(ARGV[i + 1]), ARGV[i + 2] == '1')
+    redis.call('ZADD', KEYS[6], version, ARGV[i])
+    redis.call('ZREM', KEYS[7], ARGV[i])
+end
+return version
@@ -0,0 +1,39 @@
+-- Prepended to every script by RedisTodoService.loadScript, for the ones that index or decode todos.
+-- KEYS[2] order index, KEYS[3] open index, KEYS[4] done index, as in the scripts that call index.
+local function index(id, order, completed)
+    redis.call('ZADD', KEYS[2], order, id)
+    if completed then
+        redis.call('ZREM', KEYS[3], id)
+        redis.call('ZADD', KEYS[4], order, id)
+    else
+        redis.call('ZREM', KEYS[4], id)
+        redis.call('ZADD', KEYS[3], order, id)
+    end
+end
+
+-- todos are stored either as JSON or in the binary layout of BinaryTodoCodec, which starts with
+-- its format byte: 2, or 1 for records written before todos had a version
+local function read_string(doc, pos)
+    local length
+    length, pos = struct.unpack('>i4', doc, pos)
+    if length < 0 then
+        return nil, pos
+    end
+    return doc:sub(pos, pos + length - 1), pos + length
+end
+
+local function decode(doc)
+    local format = doc:byte(1)
+    if format ~= 1 and format ~= 2 then
+        return cjson.decode(doc), false
+    end
+    local _, id, flags, order, pos = struct.unpack('>Bi4Bi4', doc)
+    local todo = {id = id, completed = flags % 2 == 1, order = order, version = 0}
+    if format == 2 then
+        todo.version, pos = struct.unpack('>i8', doc, pos)
+    end
+    todo.title, pos = read_string(doc, pos)
+    todo.url = read_string(doc, pos)
+    return todo, true
+end
+
@@ -0,0 +1,46 @@
+-- One page of an index with the documents it points at, resuming after the entry the cursor names.
+-- KEYS[1] todo hash, KEYS[2] index to read, ARGV[1] page size, ARGV[2] '1' for highest order first,
+-- then ARGV[3] order and ARGV[4] id of the last todo handed out, both left out for the first page.
+-- Returns '1' if more todos follow the page, else '0', then id, order and document of each todo.
+local limit = tonumber(ARGV[1])
+local descending = ARGV[2] == '1'
+local entries
+if #ARGV < 4 then
+    entries = redis.call(descending and 'ZREVRANGE' or 'ZRANGE', KEYS[2], 0, limit, 'WITHSCORES')
+else
+    -- ranks count from the cursor, which need not be in the index any more: a member sorting right
+    -- after its id, as ids are digits only, takes its place long enough to be ranked
+    local order = tonumber(ARGV[3])
+    local mark = ARGV[4] .. '\0'
+    redis.call('ZADD', KEYS[2], order, mark)
+    local upto = redis.call('ZRANK', KEYS[2], mark)
+    redis.call('ZREM', KEYS[2], mark)
+    if descending then
+        if tonumber(redis.call('ZSCORE', KEYS[2], ARGV[4])) == order then
+            upto = upto - 1
+        end
+        local from = redis.call('ZCARD', KEYS[2]) - upto
+        entries = redis.call('ZREVRANGE', KEYS[2], from, from + limit, 'WITHSCORES')
+    else
+        entries = redis.call('ZRANGE', KEYS[2], upto, upto + limit, 'WITHSCORES')
+    end
+end
+
+-- one entry past the page tells whether another page follows
+local count = math.min(#entries / 2, limit)
+local result = {#entries / 2 > limit and '1' or '0'}
+if count > 0 then
+    local ids = {}
+    for i = 1, count do
+        ids[i] = entries[2 * i - 1]
+    end
+    local docs = redis.call('HMGET', KEYS[1], unpack(ids))
+    for i = 1, count do
+        if docs[i] then
+            result[#result + 1] = ids[i]
+            result[#result + 1] = entries[2 * i]
+            result[#result + 1] = docs[i]
+        end
+    end
+end
+return result
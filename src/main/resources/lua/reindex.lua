@@ -0,0 +1,28 @@
+-- Builds the indexes or the change log from the stored todos when they are missing, e.g. for
+-- data written before they existed. A new change log starts its horizon at the current version,
+-- as the deletes before it went unrecorded.
+-- KEYS[1] todo hash, KEYS[2] order index, KEYS[3] open index, KEYS[4] done index,
+-- KEYS[5] collection version, KEYS[6] change log, KEYS[7] tombstones, KEYS[8] horizon.
+-- Returns the number of todos indexed.
+local order = redis.call('EXISTS', KEYS[2]) == 0
+local changes = redis.call('EXISTS', KEYS[6]) == 0
+if not (order or changes) or redis.call('HLEN', KEYS[1]) == 0 then
+    return 0
+end
+if order then
+    redis.call('DEL', KEYS[3], KEYS[4])
+end
+local entries = redis.call('HGETALL', KEYS[1])
+for i = 1, #entries, 2 do
+    local todo = decode(entries[i + 1])
+    if order then
+        index(entries[i], tonumber(todo.order) or 0, todo.completed == true)
+    end
+    if changes then
+        redis.call('ZADD', KEYS[6], tonumber(todo.version) or 0, entries[i])
+    end
+end
+if changes then
+    redis.call('SET', KEYS[8], redis.call('GET', KEYS[5]) or 0)
+end
+return #entries / 2
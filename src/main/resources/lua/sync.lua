@@ -0,0 +1,53 @@
+-- The todos changed after a version, oldest change first, with the documents of those still there.
+-- A cut-short batch ends with the last version it holds whole, so the next one can start after it.
+-- KEYS[1] todo hash, KEYS[2] change log, KEYS[3] horizon, KEYS[4] collection version,
+-- ARGV[1] the version to start after ('0' for everything), ARGV[2] the most changes to return.
+-- Returns nothing when that version is older than the horizon or was never reached, otherwise the
+-- version the changes go up to, '1' if more are waiting or else '0', and then pairs of todo id and
+-- document, an empty string for a deleted todo.
+local version = redis.call('GET', KEYS[4]) or '0'
+local since = tonumber(ARGV[1])
+if since ~= 0 and (since < tonumber(redis.call('GET', KEYS[3]) or '0') or since > tonumber(version)) then
+    return {}
+end
+
+local limit = tonumber(ARGV[2])
+local rows = redis.call('ZRANGEBYSCORE', KEYS[2], since == 0 and '-inf' or '(' .. ARGV[1], '+inf',
+    'WITHSCORES', 'LIMIT', 0, limit + 1)
+local count = #rows / 2
+local upto = version
+local more = '0'
+if count > limit then
+    more = '1'
+    -- scores of one version come back formatted alike, so they compare as strings
+    local cut = rows[limit * 2 + 2]
+    count = limit
+    while count > 0 and rows[count * 2] == cut do
+        count = count - 1
+    end
+    if count == 0 then
+        -- one version alone is over the limit, and it is only handed out whole
+        rows = redis.call('ZRANGEBYSCORE', KEYS[2], cut, cut, 'WITHSCORES')
+        count = #rows / 2
+    end
+    upto = rows[count * 2]
+    -- nothing can follow the collection version
+    if tonumber(upto) == tonumber(version) then
+        more = '0'
+    end
+end
+
+local result = {upto, more}
+-- in chunks, unpack runs out of stack long before a version runs out of todos
+for from = 1, count, 1000 do
+    local ids = {}
+    for i = from, math.min(from + 999, count) do
+        ids[#ids + 1] = rows[i * 2 - 1]
+    end
+    local docs = redis.call('HMGET', KEYS[1], unpack(ids))
+    for i = 1, #ids do
+        result[#result + 1] = ids[i]
+        result[#result + 1] = docs[i] or ''
+    end
+end
+return result
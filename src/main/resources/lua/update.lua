@@ -0,0 +1,78 @@
+-- Merges the supplied fields into stored todos and writes them back in one step, moving them
+-- between the indexes when order or completed changed. Each todo keeps the format it was stored in.
+-- The collection version is bumped once if any todo exists, and the merged todos take its new value
+-- and are logged as changed at it.
+-- KEYS[1] todo hash, KEYS[2] order index, KEYS[3] open index, KEYS[4] done index,
+-- KEYS[5] collection version, KEYS[6] change log, ARGV[1] '1' to pretty print JSON, then pairs of
+-- todo id and a JSON object holding only the fields to change.
+-- Returns the merged documents in argument order, with an empty string for each missing todo.
+local function write_string(value)
+    if type(value) ~= 'string' then
+        return struct.pack('>i4', -1)
+    end
+    return struct.pack('>i4', #value) .. value
+end
+
+-- JSON is written as TodoJson writes it, rather than by cjson, which orders the fields at random,
+-- escapes '/' and knows no pretty printing
+local escapes = {['"'] = '\\"', ['\\'] = '\\\\', ['\b'] = '\\b', ['\f'] = '\\f', ['\n'] = '\\n',
+    ['\r'] = '\\r', ['\t'] = '\\t'}
+
+local function json_string(value)
+    if type(value) ~= 'string' then
+        return 'null'
+    end
+    return '"' .. (value:gsub('[%z\1-\31"\\]', function(c)
+        return escapes[c] or string.format('\\u%04X', c:byte())
+    end)) .. '"'
+end
+
+local function render(todo, pretty)
+    local fields = {
+        {'id', string.format('%d', todo.id)},
+        {'title', json_string(todo.title)},
+        {'completed', todo.completed == true and 'true' or 'false'},
+        {'order', string.format('%d', tonumber(todo.order) or 0)},
+        {'url', json_string(todo.url)},
+        {'version', string.format('%d', todo.version)},
+    }
+    local separator, open, close = ':', '{', '}'
+    if pretty then
+        separator, open, close = ' : ', '{\n  ', '\n}'
+    end
+    for i, field in ipairs(fields) do
+        fields[i] = '"' .. field[1] .. '"' .. separator .. field[2]
+    end
+    return open .. table.concat(fields, pretty and ',\n  ' or ',') .. close
+end
+
+local function encode(todo, binary, pretty)
+    if not binary then
+        return render(todo, pretty)
+    end
+    return struct.pack('>Bi4Bi4i8', 2, todo.id, todo.completed == true and 1 or 0, tonumber(todo.order) or 0,
+        todo.version) .. write_string(todo.title) .. write_string(todo.url)
+end
+
+local pretty = ARGV[1] == '1'
+local merged = {}
+local version
+for i = 2, #ARGV, 2 do
+    local doc = redis.call('HGET', KEYS[1], ARGV[i])
+    if doc then
+        version = version or redis.call('INCR', KEYS[5])
+        local todo, binary = decode(doc)
+        for field, value in pairs(cjson.decode(ARGV[i + 1])) do
+            todo[field] = value
+        end
+        todo.version = version
+        doc = encode(todo, binary, pretty)
+        redis.call('HSET', KEYS[1], ARGV[i], doc)
+        index(ARGV[i], tonumber(todo.order) or 0, todo.completed == true)
+        redis.call('ZADD', KEYS[6], version, ARGV[i])
+        merged[#merged + 1] = doc
+    else
+        merged[#merged + 1] = ''
+    end
+end
+return merged
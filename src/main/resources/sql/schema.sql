@@ -0,0 +1,26 @@
+CREATE TABLE IF NOT EXISTS todo (
+    id INT PRIMARY KEY,
+    title VARCHAR,
+    completed BOOLEAN NOT NULL,
+    ord INT NOT NULL,
+    url VARCHAR,
+    version BIGINT NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS todo_order ON todo (ord, id);
+
+CREATE INDEX IF NOT EXISTS todo_completed_order ON todo (completed, ord, id);
+
+CREATE INDEX IF NOT EXISTS todo_version ON todo (version, id);
+
+CREATE TABLE IF NOT EXISTS todo_tombstone (
+    id INT PRIMARY KEY,
+    version BIGINT NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS todo_tombstone_version ON todo_tombstone (version, id);
+
+CREATE TABLE IF NOT EXISTS todo_counter (
+    name VARCHAR(32) PRIMARY KEY,
+    val BIGINT NOT NULL
+);
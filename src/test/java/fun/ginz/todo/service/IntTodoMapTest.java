@@ -0,0 +1,48 @@
+package fun.ginz.todo.service;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class IntTodoMapTest {
+
+    @Test
+    public void putGetRemove() {
+        IntTodoMap map = new IntTodoMap();
+        for (int id = 1; id <= 100; id++) {
+            assertNull(map.put(id, "todo " + id));
+        }
+        assertEquals(100, map.size());
+        assertEquals("todo 42", map.put(42, "changed"));
+        assertEquals("changed", map.get(42));
+
+        for (int id = 1; id <= 100; id += 2) {
+            assertEquals("todo " + id, map.remove(id));
+        }
+        assertEquals(50, map.size());
+        for (int id = 1; id <= 100; id++) {
+            assertEquals(id % 2 == 0 ? (id == 42 ? "changed" : "todo " + id) : null, map.get(id));
+        }
+    }
+
+    @Test(timeout = 5000)
+    public void removingTheFreeKeyChangesNothing() {
+        IntTodoMap map = new IntTodoMap();
+        for (int id = 1; id <= 31; id++) {
+            map.put(id, "todo " + id);
+        }
+        for (int i = 0; i < 100; i++) {
+            assertNull(map.remove(0));
+        }
+        assertEquals(31, map.size());
+
+        // a size gone negative stops the table from growing until a miss probes forever
+        for (int id = 32; id <= 100; id++) {
+            map.put(id, "todo " + id);
+        }
+        assertEquals(100, map.size());
+        assertNull(map.get(999));
+        assertEquals("todo 100", map.get(100));
+    }
+}
@@ -0,0 +1,278 @@
+package fun.ginz.todo.service;
+
+import com.zaxxer.hikari.HikariConfig;
+import fun.ginz.todo.entity.Todo;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class JdbcTodoServiceTest {
+
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+    private static final int TOMBSTONES = 2;
+
+    private Vertx vertx;
+    private JdbcTodoService service;
+
+    @Before
+    public void setUp() throws Exception {
+        vertx = Vertx.vertx();
+        HikariConfig config = new HikariConfig();
+        // a database of its own per test, kept until the pool closes
+        config.setJdbcUrl("jdbc:h2:mem:todos" + DATABASES.incrementAndGet() + ";DB_CLOSE_DELAY=-1");
+        config.setUsername("sa");
+        config.setPassword("");
+        JdbcTodoStore store = JdbcTodoStore.shared(vertx, config, 2, 64, false, null);
+        service = new JdbcTodoService(store, false, TOMBSTONES);
+        await(store.warmUp());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        CompletableFuture<Void> closed = new CompletableFuture<>();
+        vertx.close(res -> closed.complete(null));
+        closed.get(10, TimeUnit.SECONDS);
+    }
+
+    private static <T> T await(Future<T> future) throws Exception {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        future.setHandler(res -> {
+            if (res.succeeded()) {
+                result.complete(res.result());
+            } else {
+                result.completeExceptionally(res.cause());
+            }
+        });
+        try {
+            return result.get(10, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            throw (Exception) e.getCause();
+        }
+    }
+
+    private static Todo todo(int id, boolean completed, int order) {
+        return new Todo(id, "todo " + id, completed, order, "todos/" + id);
+    }
+
+    /** Todos 1 to 5, ordered 50 down to 10 so that order and id sort apart, the even ones completed. */
+    private void insertFive() throws Exception {
+        List<Todo> todos = new ArrayList<>();
+        for (int id = 1; id <= 5; id++) {
+            todos.add(todo(id, id % 2 == 0, 60 - id * 10));
+        }
+        await(service.insertAll(todos));
+    }
+
+    private static List<Integer> ids(List<Todo> todos) {
+        return todos.stream().map(Todo::getId).collect(Collectors.toList());
+    }
+
+    @Test
+    public void insertAllStampsOneVersion() throws Exception {
+        long before = await(service.version());
+        List<Todo> inserted = await(service.insertAll(Arrays.asList(todo(1, false, 1), todo(2, true, 2))));
+        long after = await(service.version());
+
+        assertEquals(before + 1, after);
+        assertEquals(after, inserted.get(0).getVersion());
+        assertEquals(after, inserted.get(1).getVersion());
+        Todo stored = await(service.getCertain("2")).get();
+        assertEquals("todo 2", stored.getTitle());
+        assertTrue(stored.getCompleted());
+        assertEquals(after, stored.getVersion());
+
+        // an insert replaces the todo with the same id
+        await(service.insert(new Todo(2, "replaced", false, 7, null)));
+        assertEquals("replaced", await(service.getCertain("2")).get().getTitle());
+        assertEquals(2, await(service.getAll()).size());
+    }
+
+    @Test
+    public void theLastOfTodosWithOneIdWins() throws Exception {
+        long before = await(service.version());
+        await(service.insertAll(Arrays.asList(
+                new Todo(5, "first", false, 1, null), todo(6, false, 2), new Todo(5, "second", true, 3, null))));
+
+        assertEquals(before + 1, (long) await(service.version()));
+        Todo stored = await(service.getCertain("5")).get();
+        assertEquals("second", stored.getTitle());
+        assertTrue(stored.getCompleted());
+        assertEquals(Arrays.asList(5, 6), ids(await(service.getAll())));
+    }
+
+    @Test
+    public void updateAllMergesPatchesAndSkipsMissingTodos() throws Exception {
+        insertFive();
+        long before = await(service.version());
+        Todo completed = new Todo();
+        completed.setCompleted(true);
+        completed.setId(1);
+        Todo renamed = new Todo();
+        renamed.setTitle("renamed");
+        renamed.setId(3);
+        Todo missing = new Todo();
+        missing.setTitle("missing");
+        missing.setId(99);
+
+        List<Todo> merged = await(service.updateAll(Arrays.asList(completed, renamed, missing)));
+        assertEquals(before + 1, (long) await(service.version()));
+        assertEquals("todo 1", merged.get(0).getTitle());
+        assertTrue(merged.get(0).getCompleted());
+        assertEquals("renamed", merged.get(1).getTitle());
+        assertFalse(merged.get(1).getCompleted());
+        assertEquals(before + 1, merged.get(1).getVersion());
+        assertNull(merged.get(2));
+    }
+
+    @Test
+    public void writesThatChangeNothingKeepTheVersion() throws Exception {
+        insertFive();
+        long before = await(service.version());
+        Todo missing = new Todo();
+        missing.setTitle("missing");
+        missing.setId(99);
+
+        assertNull(await(service.updateAll(Collections.singletonList(missing))).get(0));
+        await(service.deleteMany(Arrays.asList("98", "99", "foo")));
+        assertNull(await(service.update("foo", missing)));
+        assertEquals(before, (long) await(service.version()));
+    }
+
+    @Test
+    public void deleteManyRemovesTheTodosInOneVersion() throws Exception {
+        insertFive();
+        long before = await(service.version());
+        await(service.deleteMany(Arrays.asList("1", "3", "99")));
+
+        assertEquals(before + 1, (long) await(service.version()));
+        assertEquals(Arrays.asList(2, 4, 5), ids(await(service.getAll())));
+        assertFalse(await(service.getCertain("1")).isPresent());
+
+        await(service.deleteAll());
+        assertEquals(before + 2, (long) await(service.version()));
+        assertTrue(await(service.getAll()).isEmpty());
+    }
+
+    @Test
+    public void queryPagesByOrderInBothDirections() throws Exception {
+        insertFive();
+        List<Integer> ascending = new ArrayList<>();
+        String cursor = Page.FIRST;
+        do {
+            Page<Todo> page = await(service.query(new TodoQuery(null, false, cursor, 2)));
+            assertTrue(page.getItems().size() <= 2);
+            ascending.addAll(ids(page.getItems()));
+            cursor = page.getCursor();
+        } while (!Page.FIRST.equals(cursor));
+        assertEquals(Arrays.asList(5, 4, 3, 2, 1), ascending);
+
+        List<Integer> descending = new ArrayList<>();
+        do {
+            Page<Todo> page = await(service.query(new TodoQuery(null, true, cursor, 2)));
+            descending.addAll(ids(page.getItems()));
+            cursor = page.getCursor();
+        } while (!Page.FIRST.equals(cursor));
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5), descending);
+
+        Page<Todo> open = await(service.query(new TodoQuery(false, false, Page.FIRST, 10)));
+        assertEquals(Arrays.asList(5, 3, 1), ids(open.getItems()));
+        assertTrue(open.isLast());
+    }
+
+    @Test
+    public void scanPagesById() throws Exception {
+        insertFive();
+        List<Integer> scanned = new ArrayList<>();
+        String cursor = Page.FIRST;
+        do {
+            Page<Todo> page = await(service.scan(cursor, 3));
+            scanned.addAll(ids(page.getItems()));
+            cursor = page.getCursor();
+        } while (!Page.FIRST.equals(cursor));
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5), scanned);
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void foreignCursorsFail() throws Exception {
+        await(service.query(new TodoQuery(null, false, "not-a-cursor", 2)));
+    }
+
+    @Test
+    public void changesFromTheOriginAndInBatches() throws Exception {
+        await(service.insert(todo(1, false, 1)));
+        await(service.insertAll(Arrays.asList(todo(2, false, 2), todo(3, false, 3))));
+        long version = await(service.version());
+
+        Changes all = await(service.changes(Changes.ORIGIN, 10));
+        assertEquals(3, all.getItems().size());
+        assertTrue(all.isLast());
+        assertEquals(String.valueOf(version), all.getVersion());
+
+        // the batch ends before the version it would have to split
+        Changes first = await(service.changes(Changes.ORIGIN, 2));
+        assertEquals(1, first.getItems().size());
+        assertFalse(first.isLast());
+        // and hands out a version over the limit whole
+        Changes rest = await(service.changes(first.getVersion(), 1));
+        assertEquals(2, rest.getItems().size());
+        assertTrue(rest.isLast());
+        assertEquals(String.valueOf(version), rest.getVersion());
+    }
+
+    @Test
+    public void tombstonesAndTheHorizon() throws Exception {
+        insertFive();
+        String synced = await(service.changes(Changes.ORIGIN, 10)).getVersion();
+
+        await(service.delete("1"));
+        await(service.update("2", new Todo(0, "changed", null, null, null)));
+        Changes changes = await(service.changes(synced, 10));
+        assertEquals(Collections.singletonList(1), changes.getDeleted());
+        assertEquals(1, changes.getItems().size());
+        assertEquals("changed", new Todo(changes.getItems().get(0)).getTitle());
+
+        // a todo inserted again is no longer deleted
+        await(service.insert(todo(1, false, 1)));
+        changes = await(service.changes(synced, 10));
+        assertTrue(changes.getDeleted().isEmpty());
+        assertEquals(2, changes.getItems().size());
+
+        // past the tombstone limit the oldest go, and versions before them expire
+        String beforeDeletes = await(service.changes(synced, 10)).getVersion();
+        await(service.delete("3"));
+        String afterFirst = String.valueOf(await(service.version()));
+        await(service.delete("4"));
+        await(service.delete("5"));
+        assertTrue(await(service.changes(beforeDeletes, 10)).isExpired());
+        Changes kept = await(service.changes(afterFirst, 10));
+        assertFalse(kept.isExpired());
+        assertEquals(Arrays.asList(4, 5), kept.getDeleted());
+        assertEquals(2, await(service.changes(Changes.ORIGIN, 10)).getItems().size());
+
+        // so do versions never handed out, and every version once the collection is cleared
+        assertTrue(await(service.changes(String.valueOf(Long.MAX_VALUE), 10)).isExpired());
+        String beforeClear = String.valueOf(await(service.version()));
+        await(service.deleteAll());
+        assertTrue(await(service.changes(beforeClear, 10)).isExpired());
+        Changes cleared = await(service.changes(Changes.ORIGIN, 10));
+        assertTrue(cleared.getItems().isEmpty());
+        assertTrue(cleared.getDeleted().isEmpty());
+    }
+}
@@ -0,0 +1,107 @@
+package fun.ginz.todo.service;
+
+import fun.ginz.todo.entity.Todo;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.Timeout;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@RunWith(VertxUnitRunner.class)
+public class MemoryTodoServiceTest {
+
+    @Rule
+    public TemporaryFolder dir = new TemporaryFolder();
+
+    @Rule
+    public Timeout timeout = Timeout.seconds(10);
+
+    private Vertx vertx;
+    private MemoryTodoEngine engine;
+    private MemoryTodoService service;
+
+    @Before
+    public void setUp(TestContext context) {
+        vertx = Vertx.vertx();
+        engine = MemoryTodoEngine.shared(vertx, dir.getRoot(), 60000, false);
+        service = new MemoryTodoService(engine, false);
+        engine.warmUp().setHandler(context.asyncAssertSuccess());
+    }
+
+    @After
+    public void tearDown(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    private Future<Void> insert(int from, int to) {
+        List<Future> inserted = new ArrayList<>();
+        for (int id = from; id <= to; id++) {
+            inserted.add(service.insert(new Todo(id, "todo " + id, false, id, null)));
+        }
+        return CompositeFuture.all(inserted).mapEmpty();
+    }
+
+    @Test
+    public void invalidIdsLeaveTheStoreAlone(TestContext context) {
+        Async async = context.async();
+        List<Future> invalid = new ArrayList<>();
+        insert(1, 31).compose(v -> {
+            for (int i = 0; i < 50; i++) {
+                invalid.add(service.delete("foo"));
+                invalid.add(service.delete("0"));
+                invalid.add(service.deleteMany(Arrays.asList("bar", "0")));
+            }
+            invalid.add(service.getCertainRaw("foo").map(raw -> {
+                context.assertFalse(raw.isPresent());
+                return null;
+            }));
+            invalid.add(service.update("foo", new Todo()).map(updated -> {
+                context.assertNull(updated);
+                return null;
+            }));
+            return CompositeFuture.all(invalid);
+        }).compose(v -> insert(32, 100)).compose(v -> service.getAll()).compose(all -> {
+            context.assertEquals(100, all.size());
+            return service.getManyRaw(Arrays.asList("999", "foo", "100"));
+        }).setHandler(context.asyncAssertSuccess(docs -> {
+            context.assertNull(docs.get(0));
+            context.assertNull(docs.get(1));
+            context.assertEquals("todo 100", new Todo(docs.get(2)).getTitle());
+            async.complete();
+        }));
+    }
+
+    @Test
+    public void theLastReleaseClosesTheEngine(TestContext context) {
+        Async async = context.async();
+        MemoryTodoEngine other = MemoryTodoEngine.shared(vertx, dir.getRoot(), 60000, false);
+        context.assertTrue(other == engine);
+        insert(1, 3).compose(v -> engine.release())
+                // still held by the other caller
+                .compose(v -> service.getAll()).compose(all -> {
+                    context.assertEquals(3, all.size());
+                    return other.release();
+                }).compose(v -> {
+                    context.assertTrue(service.getAll().failed());
+                    MemoryTodoEngine reopened = MemoryTodoEngine.shared(vertx, dir.getRoot(), 60000, false);
+                    context.assertFalse(reopened == engine);
+                    return reopened.warmUp().compose(w -> new MemoryTodoService(reopened, false).getAll())
+                            .compose(all -> {
+                                context.assertEquals(3, all.size());
+                                return reopened.release();
+                            });
+                }).setHandler(context.asyncAssertSuccess(v -> async.complete()));
+    }
+}
@@ -0,0 +1,116 @@
+package fun.ginz.todo.service;
+
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.redis.RedisClient;
+import io.vertx.redis.RedisOptions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import redis.embedded.RedisServer;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+public class RedisIdAllocatorTest {
+
+    private static final int PORT = Integer.getInteger("redis.test.port", 6398);
+    private static final String KEY = "TEST_TODO_ID";
+    private static final int BLOCK = 5;
+
+    private RedisServer server;
+    private Vertx vertx;
+    private RedisIdAllocator first;
+    private RedisIdAllocator second;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new RedisServer(PORT);
+        server.start();
+        vertx = Vertx.vertx();
+        RedisOptions options = new RedisOptions().setPort(PORT);
+        // two instances, each leasing blocks of its own off the same counter
+        first = new RedisIdAllocator(RedisClient.create(vertx, options), KEY, BLOCK);
+        second = new RedisIdAllocator(RedisClient.create(vertx, options), KEY, BLOCK);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        CompletableFuture<Void> closed = new CompletableFuture<>();
+        vertx.close(res -> closed.complete(null));
+        closed.get(10, TimeUnit.SECONDS);
+        server.stop();
+    }
+
+    private static <T> T await(Future<T> future) throws Exception {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        future.setHandler(res -> {
+            if (res.succeeded()) {
+                result.complete(res.result());
+            } else {
+                result.completeExceptionally(res.cause());
+            }
+        });
+        try {
+            return result.get(10, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            throw (Exception) e.getCause();
+        }
+    }
+
+    private static void assertTaken(IdAllocator allocator, int id) throws Exception {
+        try {
+            await(allocator.observe(id));
+            fail("id " + id + " was reserved");
+        } catch (IdTakenException expected) {
+            // the id may be handed out, or has been
+        }
+    }
+
+    @Test
+    public void clientIdsInAnotherInstancesBlockAreTaken() throws Exception {
+        assertEquals(1, (int) await(first.next()));
+        assertEquals(6, (int) await(second.next()));
+
+        // 8 is the second instance's to hand out, and it will
+        assertTaken(first, 8);
+        Set<Integer> handedOut = new HashSet<>();
+        for (int i = 0; i < 4; i++) {
+            handedOut.add(await(second.next()));
+        }
+        assertEquals(new HashSet<>(Arrays.asList(7, 8, 9, 10)), handedOut);
+    }
+
+    @Test
+    public void clientIdsAheadInTheOwnBlockAreReserved() throws Exception {
+        assertEquals(1, (int) await(first.next()));
+        await(first.observe(3));
+        assertEquals(4, (int) await(first.next()));
+        // skipped over, but it may be another client's already
+        assertTaken(first, 2);
+        assertTaken(first, 3);
+        assertTaken(second, 3);
+    }
+
+    @Test
+    public void clientIdsAboveTheCounterAreReservedForEveryInstance() throws Exception {
+        assertEquals(1, (int) await(first.next()));
+        assertEquals(6, (int) await(second.next()));
+
+        await(first.observe(12));
+        assertTaken(second, 12);
+        assertTaken(first, 12);
+        for (int i = 0; i < 20; i++) {
+            assertFalse(await(second.next()) == 12);
+            assertFalse(await(first.next()) == 12);
+        }
+    }
+}
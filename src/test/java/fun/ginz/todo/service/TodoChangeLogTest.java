@@ -0,0 +1,139 @@
+package fun.ginz.todo.service;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TodoChangeLogTest {
+
+    private static final long ALL = Long.MIN_VALUE;
+
+    private static Changes read(TodoChangeLog log, long since, int limit, long version) {
+        return log.read(since, limit, version, id -> "todo " + id);
+    }
+
+    @Test
+    public void readsEverythingAfterAVersion() {
+        TodoChangeLog log = new TodoChangeLog(10);
+        log.put(1, 1);
+        log.put(2, 2);
+        log.remove(1, 3);
+
+        Changes all = read(log, ALL, 10, 3);
+        assertEquals(Collections.singletonList("todo 2"), all.getItems());
+        assertEquals(Collections.singletonList(1), all.getDeleted());
+        assertEquals("3", all.getVersion());
+        assertTrue(all.isLast());
+
+        Changes latest = read(log, 2, 10, 3);
+        assertTrue(latest.getItems().isEmpty());
+        assertEquals(Collections.singletonList(1), latest.getDeleted());
+
+        Changes none = read(log, 3, 10, 3);
+        assertTrue(none.getItems().isEmpty());
+        assertTrue(none.getDeleted().isEmpty());
+        assertEquals("3", none.getVersion());
+        assertTrue(none.isLast());
+    }
+
+    @Test
+    public void cutShortBatchesEndOnAWholeVersion() {
+        TodoChangeLog log = new TodoChangeLog(10);
+        log.put(1, 1);
+        log.put(2, 2);
+        log.put(3, 2);
+        log.put(4, 3);
+
+        // the limit falls inside version 2, which is left to the next batch
+        Changes first = read(log, ALL, 2, 3);
+        assertEquals(Collections.singletonList("todo 1"), first.getItems());
+        assertEquals("1", first.getVersion());
+        assertFalse(first.isLast());
+
+        Changes second = read(log, 1, 2, 3);
+        assertEquals(Arrays.asList("todo 2", "todo 3"), second.getItems());
+        assertEquals("2", second.getVersion());
+        assertFalse(second.isLast());
+
+        Changes third = read(log, 2, 2, 3);
+        assertEquals(Collections.singletonList("todo 4"), third.getItems());
+        assertEquals("3", third.getVersion());
+        assertTrue(third.isLast());
+    }
+
+    @Test
+    public void aVersionOverTheLimitComesWhole() {
+        TodoChangeLog log = new TodoChangeLog(10);
+        log.put(1, 1);
+        log.put(2, 1);
+        log.remove(3, 1);
+        log.put(4, 2);
+
+        Changes first = read(log, ALL, 2, 2);
+        assertEquals(Arrays.asList("todo 1", "todo 2"), first.getItems());
+        assertEquals(Collections.singletonList(3), first.getDeleted());
+        assertEquals("1", first.getVersion());
+        assertFalse(first.isLast());
+
+        Changes rest = read(log, 1, 2, 2);
+        assertEquals(Collections.singletonList("todo 4"), rest.getItems());
+        assertEquals("2", rest.getVersion());
+        assertTrue(rest.isLast());
+
+        // nothing can follow the collection version, so a whole version ending on it is the last
+        log.put(5, 3);
+        log.put(6, 3);
+        Changes whole = read(log, 2, 1, 3);
+        assertEquals(Arrays.asList("todo 5", "todo 6"), whole.getItems());
+        assertEquals("3", whole.getVersion());
+        assertTrue(whole.isLast());
+    }
+
+    @Test
+    public void droppedTombstonesRaiseTheHorizon() {
+        TodoChangeLog log = new TodoChangeLog(2);
+        for (int id = 1; id <= 4; id++) {
+            log.put(id, 1);
+        }
+        log.remove(1, 2);
+        log.remove(2, 3);
+        assertEquals(0, log.horizon());
+
+        log.remove(3, 4);
+        assertEquals(2, log.horizon());
+        Changes kept = read(log, 2, 10, 4);
+        assertEquals(Arrays.asList(2, 3), kept.getDeleted());
+        assertEquals(Collections.singletonList("todo 4"), read(log, ALL, 10, 4).getItems());
+
+        // a todo inserted again is no tombstone, so it leaves room for the next one
+        log.put(2, 5);
+        log.remove(4, 6);
+        assertEquals(2, log.horizon());
+        Changes after = read(log, 2, 10, 6);
+        assertEquals(Collections.singletonList("todo 2"), after.getItems());
+        assertEquals(Arrays.asList(3, 4), after.getDeleted());
+
+        // the horizon only ever moves up
+        log.raiseHorizon(1);
+        assertEquals(2, log.horizon());
+    }
+
+    @Test
+    public void clearForgetsEveryChange() {
+        TodoChangeLog log = new TodoChangeLog(10);
+        log.put(1, 1);
+        log.remove(2, 2);
+
+        log.clear(3);
+        assertEquals(3, log.horizon());
+        Changes cleared = read(log, ALL, 10, 3);
+        assertTrue(cleared.getItems().isEmpty());
+        assertTrue(cleared.getDeleted().isEmpty());
+        assertTrue(cleared.isLast());
+    }
+}